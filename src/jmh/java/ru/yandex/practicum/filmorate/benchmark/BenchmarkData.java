@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Общие для бенчмарков контекст приложения на встроенной H2 и генерация набора данных.
+// Данные детерминированы (фиксированный seed), чтобы результаты можно было сравнивать между коммитами.
+final class BenchmarkData {
+    static final int GENRES = 6;
+    static final int MPA_RATINGS = 5;
+    private static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    // Поднимает приложение без веб-сервера на отдельной in-memory базе.
+    // Аргументы командной строки, а не properties(): те перекрываются application.properties
+    static ConfigurableApplicationContext startContext() {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.h2.console.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--spring.main.banner-mode=off");
+    }
+
+    static List<Film> films(int count) {
+        Random random = new Random(SEED);
+        List<Film> films = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1));
+            film.setDuration(60 + random.nextInt(120));
+            MpaRating mpa = new MpaRating();
+            mpa.setId(1L + random.nextInt(MPA_RATINGS));
+            film.setMpa(mpa);
+            Set<Genre> genres = new LinkedHashSet<>();
+            for (int g = random.nextInt(3); g >= 0; g--) {
+                Genre genre = new Genre();
+                genre.setId(1L + random.nextInt(GENRES));
+                genres.add(genre);
+            }
+            film.setGenres(genres);
+            films.add(film);
+        }
+        return films;
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1970 + i % 40, 1 + i % 12, 1));
+            users.add(user);
+        }
+        return users;
+    }
+
+    // Заполняет хранилища: каждый пользователь лайкает likesPerUser фильмов и дружит с friendsPerUser пользователями
+    static void populate(FilmStorage filmStorage, UserStorage userStorage,
+                         int filmCount, int userCount, int likesPerUser, int friendsPerUser) {
+        List<Long> filmIds = filmStorage.addFilms(films(filmCount)).stream().map(Film::getId).toList();
+        List<Long> userIds = userStorage.addUsers(users(userCount)).stream().map(User::getId).toList();
+        Random random = new Random(SEED);
+        for (Long userId : userIds) {
+            for (int i = 0; i < likesPerUser; i++) {
+                filmStorage.addLike(filmIds.get(random.nextInt(filmIds.size())), userId);
+            }
+            for (int i = 0; i < friendsPerUser; i++) {
+                Long friendId = userIds.get(random.nextInt(userIds.size()));
+                if (!friendId.equals(userId)) {
+                    userStorage.addFriend(userId, friendId);
+                }
+            }
+        }
+    }
+
+    // Для базы лайки и дружба вставляются пачками в обход сервисов, иначе подготовка крупных наборов занимает минуты
+    static void populate(JdbcTemplate jdbcTemplate, FilmStorage filmStorage, UserStorage userStorage,
+                         int filmCount, int userCount, int likesPerUser, int friendsPerUser) {
+        List<Long> filmIds = filmStorage.addFilms(films(filmCount)).stream().map(Film::getId).toList();
+        List<Long> userIds = userStorage.addUsers(users(userCount)).stream().map(User::getId).toList();
+        Random random = new Random(SEED);
+        Set<List<Long>> likes = new LinkedHashSet<>();
+        Set<List<Long>> friendships = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            for (int i = 0; i < likesPerUser; i++) {
+                likes.add(List.of(filmIds.get(random.nextInt(filmIds.size())), userId));
+            }
+            for (int i = 0; i < friendsPerUser; i++) {
+                Long friendId = userIds.get(random.nextInt(userIds.size()));
+                if (!friendId.equals(userId)) {
+                    friendships.add(List.of(userId, friendId));
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)",
+                likes.stream().map(List::toArray).toList());
+        jdbcTemplate.batchUpdate("INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)",
+                friendships.stream().map(List::toArray).toList());
+        jdbcTemplate.update("UPDATE films f SET likes_count = "
+                + "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)");
+        jdbcTemplate.update("UPDATE film_genre fg SET likes_count = "
+                + "(SELECT f.likes_count FROM films f WHERE f.film_id = fg.film_id)");
+        jdbcTemplate.update("UPDATE film_mpa_rating fmr SET likes_count = "
+                + "(SELECT f.likes_count FROM films f WHERE f.film_id = fmr.film_id)");
+    }
+}
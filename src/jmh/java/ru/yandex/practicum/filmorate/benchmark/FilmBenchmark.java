@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути фильмов на встроенной H2: сборка фильмов с жанрами и лайками, популярные, лайк/снятие лайка, поиск и рекомендации
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilmBenchmark {
+    private static final int USERS = 1000;
+    private static final int LIKES_PER_USER = 20;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000"})
+    public int films;
+
+    private ConfigurableApplicationContext context;
+    private FilmStorage filmStorage;
+    private FilmService filmService;
+    private FilmSearchIndex searchIndex;
+    private RecommendationService recommendationService;
+    private long likerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        filmStorage = context.getBean("filmDbStorage", FilmStorage.class);
+        filmService = context.getBean(FilmService.class);
+        searchIndex = context.getBean(FilmSearchIndex.class);
+        recommendationService = context.getBean(RecommendationService.class);
+        BenchmarkData.populate(context.getBean(JdbcTemplate.class), filmStorage,
+                context.getBean("userDbStorage", UserStorage.class), films, USERS, LIKES_PER_USER, 0);
+        // Отдельный пользователь без лайков, чтобы пара лайк/снятие не пересекалась с подготовленными данными
+        User liker = BenchmarkData.users(1).get(0);
+        liker.setLogin("liker");
+        liker.setEmail("liker@example.com");
+        likerId = context.getBean(UserService.class).addUser(liker).getId();
+        // Данные записаны в хранилище напрямую, мимо сервиса, поэтому индексы строятся заново
+        filmService.rebuildSearchIndex();
+        recommendationService.rebuildRecommendationIndex();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> hydrateAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> hydratePage() {
+        long after = ThreadLocalRandom.current().nextLong(films - PAGE_SIZE);
+        return filmStorage.getFilmsPage(after, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmService.getFilmById(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> mostPopularFilms() {
+        return filmService.getMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public void likeAndUnlike() {
+        long filmId = randomFilmId();
+        filmService.addLike(filmId, likerId);
+        filmService.removeLike(filmId, likerId);
+    }
+
+    // Слово "film" есть во всех фильмах, номер - в одном: проверяется отбор кандидатов по редкому слову
+    @Benchmark
+    public List<Long> searchIndex() {
+        return searchIndex.search("film " + randomFilmId(), 10);
+    }
+
+    @Benchmark
+    public List<Film> searchFilms() {
+        return filmService.searchFilms("film " + randomFilmId(), 10);
+    }
+
+    @Benchmark
+    public List<Film> recommendations() {
+        return recommendationService.getRecommendations(1 + ThreadLocalRandom.current().nextLong(USERS), 10);
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(films);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Хранилища в памяти: те же операции, что и для базы, плюс конкурентные лайки из нескольких потоков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryStorageBenchmark {
+    private static final int USERS = 1000;
+
+    @Param({"1000", "10000"})
+    public int films;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage();
+        BenchmarkData.populate(filmStorage, userStorage, films, USERS, 20, 50);
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmById() {
+        return filmStorage.getFilmById(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> mostPopularFilms() {
+        return filmStorage.getMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userStorage.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void likeAndUnlike() {
+        long filmId = randomFilmId();
+        long userId = randomUserId();
+        filmStorage.addLike(filmId, userId);
+        filmStorage.removeLike(filmId, userId);
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(films);
+    }
+
+    private long randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextLong(USERS);
+    }
+}
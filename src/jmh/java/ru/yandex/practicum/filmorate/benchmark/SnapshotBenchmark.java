@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemorySnapshotStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Запись и восстановление снимка хранилищ в памяти; записей в снимке - films фильмов и USERS пользователей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final int USERS = 100_000;
+
+    @Param({"100000", "1000000"})
+    public int films;
+
+    private Path path;
+    private InMemorySnapshotStorage source;
+    private InMemorySnapshotStorage target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        BenchmarkData.populate(filmStorage, userStorage, films, USERS, 20, 50);
+        source = new InMemorySnapshotStorage(filmStorage, userStorage);
+        target = new InMemorySnapshotStorage(new InMemoryFilmStorage(), new InMemoryUserStorage());
+        path = Files.createTempDirectory("snapshot-benchmark").resolve("storage.snapshot");
+        source.save(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.getParent());
+    }
+
+    @Benchmark
+    public InMemorySnapshotStorage.Summary save() throws IOException {
+        return source.save(path);
+    }
+
+    @Benchmark
+    public InMemorySnapshotStorage.Summary restore() throws IOException {
+        return target.restore(path);
+    }
+}
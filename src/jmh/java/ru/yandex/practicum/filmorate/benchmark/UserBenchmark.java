@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Дружба на встроенной H2: список друзей, общие друзья и предложения друзей друзей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserBenchmark {
+    @Param({"1000", "10000"})
+    public int users;
+
+    @Param({"50"})
+    public int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        userService = context.getBean(UserService.class);
+        BenchmarkData.populate(context.getBean(JdbcTemplate.class), context.getBean("filmDbStorage", FilmStorage.class),
+                context.getBean("userDbStorage", UserStorage.class), 0, users, 0, friendsPerUser);
+        // Дружба записана в хранилище напрямую, мимо сервиса, поэтому граф строится заново
+        userService.rebuildFriendGraph();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> friends() {
+        return userService.getUserFriends(randomUserId(), true);
+    }
+
+    @Benchmark
+    public List<User> commonFriends() {
+        return userService.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    @Benchmark
+    public List<User> friendSuggestions() {
+        return userService.getFriendSuggestions(randomUserId(), 10, false);
+    }
+
+    private long randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextLong(users);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Ограничивает число одновременных обращений к базе честным семафором перед пулом соединений.
+// При виртуальных потоках запросов может быть тысячи: они ждут разрешения в очереди FIFO,
+// а не внутри пула, и получают ошибку, если не дождались его за acquire-timeout.
+// Время ожидания соединения и время выполнения запросов пишутся в отдельные таймеры,
+// число запросов - ещё и в счётчик текущего HTTP-запроса (RequestStatementCounter).
+// У каждого DataSource свой семафор и свои метрики с тегом datasource = имя бина.
+@Component
+@Slf4j
+public class JdbcConcurrencyLimiter implements BeanPostProcessor, MeterBinder {
+    static final String CONNECTION_WAIT_METRIC = "filmorate.jdbc.connection.wait";
+    static final String QUERY_METRIC = "filmorate.jdbc.query";
+    static final String REJECTED_METRIC = "filmorate.jdbc.connection.rejected";
+    static final String DATASOURCE_TAG = "datasource";
+
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+    // DataSource оборачивается раньше, чем создаётся реестр метрик приложения, а обращаться к бину
+    // реестра из BeanPostProcessor нельзя. Метрики сразу регистрируются в собственном составном реестре,
+    // а реестр приложения подключается к нему в bindTo: Spring Boot вызывает его у всех MeterBinder
+    private final CompositeMeterRegistry meters = new CompositeMeterRegistry();
+
+    @Autowired
+    public JdbcConcurrencyLimiter(@Value("${filmorate.jdbc.max-concurrency:10}") int maxConcurrency,
+                                  @Value("${filmorate.jdbc.acquire-timeout:5s}") Duration acquireTimeout) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("filmorate.jdbc.max-concurrency должен быть положительным");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public JdbcConcurrencyLimiter(int maxConcurrency, Duration acquireTimeout, MeterRegistry registry) {
+        this(maxConcurrency, acquireTimeout);
+        bindTo(registry);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meters.add(registry);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LimitingDataSource)) {
+            log.info("Доступ к DataSource {} ограничен {} одновременными соединениями", beanName, maxConcurrency);
+            return new LimitingDataSource(dataSource, beanName);
+        }
+        return bean;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    private class LimitingDataSource extends DelegatingDataSource {
+        private final Semaphore permits = new Semaphore(maxConcurrency, true);
+        private final Timer connectionWaitTimer;
+        private final Timer queryTimer;
+        private final Counter rejectedCounter;
+
+        LimitingDataSource(DataSource target, String name) {
+            super(target);
+            Tags tags = Tags.of(DATASOURCE_TAG, name);
+            this.connectionWaitTimer = Timer.builder(CONNECTION_WAIT_METRIC)
+                    .description("Ожидание разрешения лимитера и соединения из пула")
+                    .tags(tags)
+                    .register(meters);
+            this.queryTimer = Timer.builder(QUERY_METRIC)
+                    .description("Выполнение SQL-запросов")
+                    .tags(tags)
+                    .register(meters);
+            this.rejectedCounter = Counter.builder(REJECTED_METRIC)
+                    .description("Запросы, не дождавшиеся соединения за acquire-timeout")
+                    .tags(tags)
+                    .register(meters);
+            Gauge.builder("filmorate.jdbc.connections.active", permits, p -> maxConcurrency - p.availablePermits())
+                    .description("Соединения, выданные через лимитер")
+                    .tags(tags)
+                    .register(meters);
+            Gauge.builder("filmorate.jdbc.connections.pending", permits, Semaphore::getQueueLength)
+                    .description("Потоки, ожидающие разрешения лимитера")
+                    .tags(tags)
+                    .register(meters);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return acquire(super::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return acquire(() -> super.getConnection(username, password));
+        }
+
+        private Connection acquire(ConnectionSupplier supplier) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                if (!permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    rejectedCounter.increment();
+                    throw new SQLTransientConnectionException(
+                            "Не удалось получить соединение с базой за " + acquireTimeout.toMillis() + " мс");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Ожидание соединения с базой прервано", e);
+            }
+            try {
+                Connection connection = supplier.get();
+                connectionWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return limitedConnection(connection);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        // Разрешение возвращается при закрытии соединения, повторный close() его не освобождает
+        private Connection limitedConnection(Connection connection) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            try {
+                                return invoke(connection, method, args);
+                            } finally {
+                                if (released.compareAndSet(false, true)) {
+                                    permits.release();
+                                }
+                            }
+                        }
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof Statement statement) {
+                            return timedStatement(statement);
+                        }
+                        return result;
+                    });
+        }
+
+        private Statement timedStatement(Statement statement) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        if (!method.getName().startsWith("execute")) {
+                            return invoke(statement, method, args);
+                        }
+                        RequestStatementCounter.increment();
+                        long start = System.nanoTime();
+                        try {
+                            return invoke(statement, method, args);
+                        } finally {
+                            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.Strategy;
+
+@Configuration
+public class LoggingConfig {
+
+    // Заменяет стратегию Logbook по умолчанию, которая буферизует и пишет тело каждого запроса
+    @Bean
+    public Strategy logbookStrategy(@Value("${filmorate.logging.http-sample-rate:0.01}") double sampleRate) {
+        return new SampledLogbookStrategy(sampleRate);
+    }
+}
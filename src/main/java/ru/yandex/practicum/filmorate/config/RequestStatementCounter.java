@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.config;
+
+// Счётчик SQL-запросов текущего HTTP-запроса. Запрос обслуживается одним потоком,
+// поэтому счётчик хранится в ThreadLocal: вне запроса (инициализация, фоновые задачи) он не ведётся.
+public final class RequestStatementCounter {
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private RequestStatementCounter() {
+    }
+
+    static void start() {
+        CURRENT.set(new int[1]);
+    }
+
+    static int stop() {
+        int[] counter = CURRENT.get();
+        CURRENT.remove();
+        return counter == null ? 0 : counter[0];
+    }
+
+    public static void increment() {
+        int[] counter = CURRENT.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+}
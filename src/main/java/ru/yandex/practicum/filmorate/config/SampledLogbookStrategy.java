@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Логирует в Logbook только выборку запросов: для остальных тела не буферизуются и ничего не пишется.
+// Запрос и ответ обрабатываются в потоке запроса, поэтому решение о выборке хранится в ThreadLocal.
+public class SampledLogbookStrategy implements Strategy {
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+
+    private final double sampleRate;
+
+    public SampledLogbookStrategy(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Доля логируемых запросов должна быть от 0 до 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public HttpRequest process(HttpRequest request) throws IOException {
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+        SAMPLED.set(sampled);
+        return sampled ? request.withBody() : request.withoutBody();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, HttpRequest request, Sink sink) throws IOException {
+        if (isSampled()) {
+            sink.write(precorrelation, request);
+        }
+    }
+
+    @Override
+    public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+        return isSampled() ? response.withBody() : response.withoutBody();
+    }
+
+    @Override
+    public void write(Correlation correlation, HttpRequest request, HttpResponse response, Sink sink)
+            throws IOException {
+        try {
+            if (isSampled()) {
+                sink.write(correlation, request, response);
+            }
+        } finally {
+            SAMPLED.remove();
+        }
+    }
+
+    private static boolean isSampled() {
+        return Boolean.TRUE.equals(SAMPLED.get());
+    }
+}
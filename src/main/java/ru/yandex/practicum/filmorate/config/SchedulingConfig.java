@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Периодические задачи, например запись отложенных лайков. Отдельная конфигурация, а не аннотация
+// на приложении: срезы вроде @JdbcTest её не подхватывают и не запускают задачи посреди теста
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
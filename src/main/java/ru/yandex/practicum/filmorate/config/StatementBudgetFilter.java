@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Считает SQL-запросы, выполненные за HTTP-запрос, и пишет их в распределение по эндпоинтам.
+// Превышение бюджета логируется предупреждением: так N+1 виден до того, как вырастет задержка.
+@Component
+@Slf4j
+public class StatementBudgetFilter extends OncePerRequestFilter {
+    static final String STATEMENTS_METRIC = "filmorate.http.jdbc.statements";
+
+    private final MeterRegistry registry;
+    private final int statementBudget;
+
+    public StatementBudgetFilter(MeterRegistry registry,
+                                 @Value("${filmorate.jdbc.statement-budget:10}") int statementBudget) {
+        this.registry = registry;
+        this.statementBudget = statementBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestStatementCounter.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            record(request, RequestStatementCounter.stop());
+        }
+    }
+
+    private void record(HttpServletRequest request, int statements) {
+        // Шаблон пути (/films/{id}) вместо самого пути, чтобы не плодить метрики на каждый ID
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder(STATEMENTS_METRIC)
+                .description("SQL-запросы на один HTTP-запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(statements);
+        if (statements > statementBudget) {
+            log.warn("{} {} выполнил {} SQL-запросов при бюджете {}",
+                    request.getMethod(), uri, statements, statementBudget);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.CacheControl;
+
+import java.time.Duration;
+
+// Справочники загружаются один раз при старте и меняются только вместе с выкладкой,
+// поэтому клиенты и прокси могут долго хранить их у себя
+final class CachePolicies {
+    static final CacheControl REFERENCE_DATA = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+
+    private CachePolicies() {
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+
+// Идемпотентные операции отвечают 200 в любом случае, а заголовок сообщает, изменилось ли что-нибудь
+final class ChangeResponses {
+    static final String CHANGED_HEADER = "X-Changed";
+
+    private ChangeResponses() {
+    }
+
+    static ResponseEntity<Void> toResponse(boolean changed) {
+        return ResponseEntity.ok().header(CHANGED_HEADER, String.valueOf(changed)).build();
+    }
+
+    static <T> ResponseEntity<T> toResponse(boolean changed, T body) {
+        return ResponseEntity.ok().header(CHANGED_HEADER, String.valueOf(changed)).body(body);
+    }
+}
@@ -3,11 +3,16 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -23,56 +28,92 @@ public class FilmController {
 
     @PostMapping
     public ResponseEntity<Film> createFilm(@Valid @RequestBody Film film) {
-        log.info("Попытка добавления фильма: {}", film);
+        log.debug("Попытка добавления фильма: {}", film);
         Film createdFilm = filmService.addFilm(film);
         log.info("Фильм успешно добавлен");
         return ResponseEntity.ok(createdFilm);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkImportResult> importFilms(InputStream body) {
+        log.info("Попытка потоковой загрузки фильмов");
+        BulkImportResult result = filmService.importFilms(body);
+        log.info("Загрузка фильмов завершена");
+        return ResponseEntity.ok(result);
+    }
+
     @PutMapping
     public ResponseEntity<Film> updateFilm(@Valid @RequestBody Film film) {
-        log.info("Попытка обновления фильма: {}", film);
+        log.debug("Попытка обновления фильма: {}", film);
         Film updatedFilm = filmService.updateFilm(film);
         log.info("Фильм успешно обновлен");
         return ResponseEntity.ok(updatedFilm);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Film> getFilm(@PathVariable Long id) {
+    public ResponseEntity<Film> getFilm(@PathVariable Long id, WebRequest request) {
         log.info("Попытка получения фильма с id: {}", id);
+        // Версия читается одним запросом; если она совпала с If-None-Match, фильм не загружается
+        String etag = String.valueOf(filmService.getFilmVersion(id));
+        if (request.checkNotModified(etag)) {
+            log.info("Фильм не изменился");
+            return null;
+        }
         Film film = filmService.getFilmById(id);
         log.info("Фильм успешно получен");
-        return ResponseEntity.ok(film);
+        return ResponseEntity.ok().eTag(etag).body(film);
     }
 
-    @GetMapping
-    public ResponseEntity<List<Film>> getAllFilms() {
-        log.info("Попытка получения всех фильмов");
-        List<Film> films = filmService.getAllFilms();
-        log.info("Все фильмы успешно получены");
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteFilm(@PathVariable Long id) {
+        log.info("Попытка удаления фильма с id: {}", id);
+        filmService.deleteFilm(id);
+        log.info("Фильм успешно удален");
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Film>> searchFilms(@RequestParam(defaultValue = "") String q,
+                                                  @RequestParam(defaultValue = "10") int count) {
+        log.info("Попытка поиска {} фильмов по запросу: {}", count, q);
+        List<Film> films = filmService.searchFilms(q, count);
+        log.info("Найдено фильмов: {}", films.size());
         return ResponseEntity.ok(films);
     }
 
+    @GetMapping
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(defaultValue = "0") long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        log.info("Попытка получения фильмов после id: {}, limit: {}", after, limit);
+        Page<Film> page = filmService.getFilms(after, limit);
+        log.info("Страница фильмов успешно получена");
+        return PageResponses.toResponse(page);
+    }
+
     @PutMapping("/{id}/like/{userId}")
     public ResponseEntity<Void> addLike(@PathVariable Long id, @PathVariable Long userId) {
         log.info("Попытка добавления лайка фильму с id: {} от пользователя с id: {}", id, userId);
-        filmService.addLike(id, userId);
+        boolean changed = filmService.addLike(id, userId);
         log.info("Лайк успешно добавлен");
-        return ResponseEntity.ok().build();
+        return ChangeResponses.toResponse(changed);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
     public ResponseEntity<Void> removeLike(@PathVariable Long id, @PathVariable Long userId) {
         log.info("Попытка удаления лайка у фильма с id: {} от пользователя с id: {}", id, userId);
-        filmService.removeLike(id, userId);
+        boolean changed = filmService.removeLike(id, userId);
         log.info("Лайк успешно удален");
-        return ResponseEntity.ok().build();
+        return ChangeResponses.toResponse(changed);
     }
 
     @GetMapping("/popular")
-    public ResponseEntity<List<Film>> getMostPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Попытка получения {} самых популярных фильмов", count);
-        List<Film> films = filmService.getMostPopularFilms(count);
+    public ResponseEntity<List<Film>> getMostPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                                          @RequestParam(required = false) Long genreId,
+                                                          @RequestParam(required = false) Long mpaId,
+                                                          @RequestParam(required = false) Integer year) {
+        log.info("Попытка получения {} самых популярных фильмов (жанр: {}, рейтинг: {}, год: {})",
+                count, genreId, mpaId, year);
+        List<Film> films = filmService.getMostPopularFilms(count, genreId, mpaId, year);
         log.info("{} самых популярных фильмов успешно получены", count);
         return ResponseEntity.ok(films);
     }
@@ -24,14 +24,14 @@ public class GenreController {
     public ResponseEntity<List<Genre>> getAllGenres() {
         log.info("Запрос на получение всех жанров");
         List<Genre> genres = genreService.getAllGenres();
-        return ResponseEntity.ok(genres);
+        return ResponseEntity.ok().cacheControl(CachePolicies.REFERENCE_DATA).body(genres);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Genre> getGenreById(@PathVariable Long id) {
         log.info("Запрос на получение жанра с id: {}", id);
         Genre genre = genreService.getGenreById(id);
-        return ResponseEntity.ok(genre);
+        return ResponseEntity.ok().cacheControl(CachePolicies.REFERENCE_DATA).body(genre);
     }
 }
 
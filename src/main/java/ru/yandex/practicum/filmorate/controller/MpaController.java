@@ -25,13 +25,13 @@ public class MpaController {
     public ResponseEntity<List<MpaRating>> getAllMpa() {
         log.info("Запрос на получение всех MPA рейтингов");
         List<MpaRating> mpaRatings = mpaService.getAllMpa();
-        return ResponseEntity.ok(mpaRatings);
+        return ResponseEntity.ok().cacheControl(CachePolicies.REFERENCE_DATA).body(mpaRatings);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<MpaRating> getMpaById(@PathVariable Long id) {
         log.info("Запрос на получение MPA рейтинга с id: {}", id);
         MpaRating mpaRating = mpaService.getMpaById(id);
-        return ResponseEntity.ok(mpaRating);
+        return ResponseEntity.ok().cacheControl(CachePolicies.REFERENCE_DATA).body(mpaRating);
     }
 }
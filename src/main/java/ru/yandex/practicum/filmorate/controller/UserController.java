@@ -3,11 +3,20 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -15,67 +24,93 @@ import java.util.List;
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final FeedService feedService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+                          FeedService feedService) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.feedService = feedService;
     }
 
     @PostMapping
     public ResponseEntity<User> createUser(@Valid @RequestBody User user) {
-        log.info("Попытка создания пользователя: {}", user);
+        log.debug("Попытка создания пользователя: {}", user);
         User createdUser = userService.addUser(user);
         log.info("Пользователь успешно создан");
         return ResponseEntity.ok(createdUser);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkImportResult> importUsers(InputStream body) {
+        log.info("Попытка потоковой загрузки пользователей");
+        BulkImportResult result = userService.importUsers(body);
+        log.info("Загрузка пользователей завершена");
+        return ResponseEntity.ok(result);
+    }
+
     @PutMapping
     public ResponseEntity<User> updateUser(@Valid @RequestBody User user) {
-        log.info("Попытка обновления пользователя: {}", user);
+        log.debug("Попытка обновления пользователя: {}", user);
         User updatedUser = userService.updateUser(user);
         log.info("Пользователь успешно обновлен");
         return ResponseEntity.ok(updatedUser);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUser(@PathVariable Long id) {
+    public ResponseEntity<User> getUser(@PathVariable Long id, WebRequest request) {
         log.info("Попытка получения пользователя с id: {}", id);
+        // Версия читается одним запросом; если она совпала с If-None-Match, пользователь не загружается
+        String etag = String.valueOf(userService.getUserVersion(id));
+        if (request.checkNotModified(etag)) {
+            log.info("Пользователь не изменился");
+            return null;
+        }
         User user = userService.getUserById(id);
         log.info("Пользователь успешно получен");
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(etag).body(user);
     }
 
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        log.info("Попытка получения всех пользователей");
-        List<User> users = userService.getAllUsers();
-        log.info("Все пользователи успешно получены");
-        return ResponseEntity.ok(users);
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(defaultValue = "0") long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        log.info("Попытка получения пользователей после id: {}, limit: {}", after, limit);
+        Page<User> page = userService.getUsers(after, limit);
+        log.info("Страница пользователей успешно получена");
+        return PageResponses.toResponse(page);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+        log.info("Попытка удаления пользователя с id: {}", id);
+        userService.deleteUser(id);
+        log.info("Пользователь успешно удален");
+        return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/{id}/friends/{friendId}")
     public ResponseEntity<User> addFriend(@PathVariable Long id, @PathVariable Long friendId) {
         log.info("Попытка добавления друга с id: {} к пользователю с id: {}", friendId, id);
-        User user = userService.addFriend(id, friendId);
+        boolean changed = userService.addFriend(id, friendId);
         log.info("Друг успешно добавлен");
-        return ResponseEntity.ok(user);
+        return ChangeResponses.toResponse(changed, userService.getUserById(id));
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
     public ResponseEntity<User> removeFriend(@PathVariable Long id, @PathVariable Long friendId) {
         log.info("Попытка удаления друга с id: {} от пользователя с id: {}", friendId, id);
-        User user = userService.removeFriend(id, friendId);
+        boolean changed = userService.removeFriend(id, friendId);
         log.info("Друг успешно удален");
-        return ResponseEntity.ok(user);
+        return ChangeResponses.toResponse(changed, userService.getUserById(id));
     }
 
     @GetMapping("/{id}/friends")
-    public ResponseEntity<List<User>> getUserFriends(@PathVariable Long id) {
+    public ResponseEntity<List<User>> getUserFriends(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "true") boolean includeFriendIds) {
         log.info("Попытка получения друзей пользователя с id: {}", id);
-        User user = userService.getUserById(id);
-        List<User> friends = user.getFriends().stream()
-                .map(userService::getUserById)
-                .toList();
+        List<User> friends = userService.getUserFriends(id, includeFriendIds);
         log.info("Друзья пользователя успешно получены");
         return ResponseEntity.ok(friends);
     }
@@ -87,4 +122,36 @@ public class UserController {
         log.info("Общие друзья пользователей успешно получены");
         return ResponseEntity.ok(commonFriends);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{id}/friends/suggestions")
+    public ResponseEntity<List<User>> getFriendSuggestions(@PathVariable Long id,
+                                                           @RequestParam(defaultValue = "10") int count,
+                                                           @RequestParam(defaultValue = "false")
+                                                           boolean includeFriendIds) {
+        log.info("Попытка получения {} предложений друзей для пользователя с id: {}", count, id);
+        // Списки друзей предложенных пользователей по умолчанию не загружаются: у популярных
+        // пользователей они в сотни раз больше самих предложений
+        List<User> suggestions = userService.getFriendSuggestions(id, count, includeFriendIds);
+        log.info("Получено предложений друзей: {}", suggestions.size());
+        return ResponseEntity.ok(suggestions);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<List<Film>> getRecommendations(@PathVariable Long id,
+                                                         @RequestParam(defaultValue = "10") int count) {
+        log.info("Попытка получения {} рекомендаций для пользователя с id: {}", count, id);
+        List<Film> films = recommendationService.getRecommendations(id, count);
+        log.info("Получено рекомендаций: {}", films.size());
+        return ResponseEntity.ok(films);
+    }
+
+    @GetMapping("/{id}/feed")
+    public ResponseEntity<List<Event>> getFeed(@PathVariable Long id,
+                                               @RequestParam(required = false) Long before,
+                                               @RequestParam(required = false) Integer limit) {
+        log.info("Попытка получения ленты пользователя с id: {}, before: {}, limit: {}", id, before, limit);
+        Page<Event> page = feedService.getFeed(id, before, limit);
+        log.info("Получено событий ленты: {}", page.getItems().size());
+        return PageResponses.toResponse(page);
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.exception;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -22,6 +23,14 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(e.getErrorResponse(), HttpStatus.NOT_FOUND);
     }
 
+    // База перегружена: соединение не получено за отведённое время.
+    // Возвращает сообщение об ошибке и HTTP статус 503 (SERVICE UNAVAILABLE).
+    @ExceptionHandler(CannotGetJdbcConnectionException.class)
+    public ResponseEntity<String> handleCannotGetJdbcConnectionException(CannotGetJdbcConnectionException e) {
+        log.warn("Нет свободного соединения с базой: {}", e.getMessage());
+        return new ResponseEntity<>("Сервис перегружен, повторите запрос позже", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     // Возвращает сообщение об ошибке и HTTP статус 400 (BAD REQUEST).
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
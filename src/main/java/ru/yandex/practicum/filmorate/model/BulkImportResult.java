@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Итог потоковой загрузки: счётчики и ошибки по отдельным записям.
+// Список ошибок ограничен, чтобы ответ не рос вместе с размером загружаемых данных.
+@Getter
+public class BulkImportResult {
+    private long imported;
+    private long failed;
+    private final List<RecordError> errors = new ArrayList<>();
+    @JsonIgnore
+    private final int maxReportedErrors;
+
+    public BulkImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(long line, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RecordError(line, message));
+        }
+    }
+
+    @Getter
+    public static class RecordError {
+        private final long line;
+        private final String message;
+
+        public RecordError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Событие ленты: пользователь userId выполнил operation над сущностью entityId (фильмом или другом)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Event {
+    private long eventId;
+    // Время события в миллисекундах с начала эпохи
+    private long timestamp;
+    private long userId;
+    private EventType eventType;
+    private Operation operation;
+    private long entityId;
+
+    public enum EventType {
+        LIKE,
+        FRIEND
+    }
+
+    public enum Operation {
+        ADD,
+        REMOVE
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
+import lombok.ToString;
 import ru.yandex.practicum.filmorate.annotations.DateAfter1895;
 
 import java.time.LocalDate;
@@ -23,11 +24,16 @@ public class Film {
     private LocalDate releaseDate;
     @Positive(message = "Продолжительность фильма должна быть положительным числом")
     private int duration;
-    // Поле для хранения лайков
+    // Поле для хранения лайков; в toString попадает только их число
+    @ToString.Exclude
     private Set<Long> likes = new HashSet<>();
     // рейтинг MPA
     private MpaRating mpa;
     // жанры
     private Set<Genre> genres = new HashSet<>();
 
+    @ToString.Include(name = "likes")
+    private int likesCount() {
+        return likes == null ? 0 : likes.size();
+    }
 }
\ No newline at end of file
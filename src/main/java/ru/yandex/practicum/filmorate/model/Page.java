@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// Страница результатов keyset-пагинации
+@Getter
+public class Page<T> {
+    private final List<T> items;
+    // id последнего элемента страницы или null, если следующей страницы нет
+    private final Long nextCursor;
+
+    public Page(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Проверяет запрошенный размер страницы и ограничивает его максимальным
+    public static int resolveLimit(Integer limit, int defaultLimit, int maxLimit) {
+        if (limit == null) {
+            return Math.min(defaultLimit, maxLimit);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    // Собирает страницу из выборки размером до limit + 1: лишний элемент лишь сигнализирует о следующей странице
+    public static <T> Page<T> of(List<T> fetched, int limit, ToLongFunction<T> idExtractor) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new Page<>(items, idExtractor.applyAsLong(items.get(limit - 1)));
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Past;
 import jakarta.validation.constraints.Pattern;
 import lombok.Data;
+import lombok.ToString;
 
 import java.time.LocalDate;
 import java.util.HashSet;
@@ -26,6 +27,12 @@ public class User {
     @NotNull(message = "Дата рождения не может быть null")
     @Past(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
-    // Поле для хранения друзей
+    // Поле для хранения друзей; в toString попадает только их число
+    @ToString.Exclude
     private Set<Long> friends = new HashSet<>();
+
+    @ToString.Include(name = "friends")
+    private int friendsCount() {
+        return friends == null ? 0 : friends.size();
+    }
 }
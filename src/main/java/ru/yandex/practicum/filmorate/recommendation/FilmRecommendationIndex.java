@@ -0,0 +1,252 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Разреженная модель совместных лайков в памяти процесса: для каждого фильма хранится,
+// сколько пользователей лайкнули его вместе с каждым другим фильмом.
+// Лайк пользователя обновляет только строки фильмов, которые он уже лайкал.
+@Component
+public class FilmRecommendationIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private Model model = new Model();
+    // Изменения, пришедшие во время перестройки: после неё они повторяются на новой модели
+    private List<Consumer<Model>> changesDuringRebuild;
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            model = new Model();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Полная перестройка по всем лайкам. Новая модель строится без блокировки: лайки собираются
+    // по фильмам и пользователям, каждый список сортируется один раз, затем считаются
+    // совместные лайки. Готовая модель подменяет текущую, изменения за время перестройки
+    // повторяются на ней, поэтому не теряются.
+    public void rebuild(Consumer<FilmStorage.LikeConsumer> likes) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Model rebuilt = null;
+            try {
+                rebuilt = Model.build(likes);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (rebuilt != null) {
+                        for (Consumer<Model> change : changesDuringRebuild) {
+                            change.accept(rebuilt);
+                        }
+                        model = rebuilt;
+                    }
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public void addLike(long filmId, long userId) {
+        change(model -> model.like(filmId, userId));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        change(model -> model.unlike(filmId, userId));
+    }
+
+    public void removeFilm(long filmId) {
+        change(model -> model.removeFilm(filmId));
+    }
+
+    // Снимает все лайки удалённого пользователя и возвращает ID фильмов, которые он лайкал
+    public long[] removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            long[] liked = model.userLikes.getOrDefault(userId, SortedArrays.EMPTY_LONGS);
+            change(model -> model.removeUser(userId));
+            return liked;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // До limit фильмов, которые пользователь ещё не лайкал, по убыванию суммарного сходства
+    // с его лайками. Сходство двух фильмов - косинусная мера: совместные лайки, делённые на
+    // корень из произведения числа лайков, чтобы популярные фильмы не подходили ко всему.
+    public List<Long> recommend(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            Model model = this.model;
+            long[] liked = model.userLikes.get(userId);
+            if (liked == null) {
+                return List.of();
+            }
+            Map<Long, Double> scores = new HashMap<>();
+            for (long filmId : liked) {
+                LongIntHashMap row = model.coLikes.get(filmId);
+                if (row == null) {
+                    continue;
+                }
+                double filmLikes = model.likersCount(filmId);
+                row.forEach((other, together) -> {
+                    if (!SortedArrays.contains(liked, other)) {
+                        double similarity = together / Math.sqrt(filmLikes * model.likersCount(other));
+                        scores.merge(other, similarity, Double::sum);
+                    }
+                });
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Model> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(model);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<Long> top(Map<Long, Double> scores, int limit) {
+        Comparator<Map.Entry<Long, Double>> ranking = Comparator
+                .comparing((Map.Entry<Long, Double> entry) -> entry.getValue())
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(ranking);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.add(entry);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        Long[] ids = new Long[heap.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = heap.poll().getKey();
+        }
+        return List.of(ids);
+    }
+
+    // Состояние модели; меняется только под блокировкой записи индекса
+    private static final class Model {
+        // ID пользователя -> отсортированные ID лайкнутых фильмов
+        private final Map<Long, long[]> userLikes = new HashMap<>();
+        // ID фильма -> отсортированные ID пользователей, поставивших лайк
+        private final Map<Long, long[]> filmLikers = new HashMap<>();
+        // ID фильма -> (ID другого фильма -> число пользователей, лайкнувших оба)
+        private final Map<Long, LongIntHashMap> coLikes = new HashMap<>();
+
+        private static Model build(Consumer<FilmStorage.LikeConsumer> likes) {
+            Map<Long, LongArrayList> likedByUser = new HashMap<>();
+            Map<Long, LongArrayList> likersByFilm = new HashMap<>();
+            likes.accept((filmId, userId) -> {
+                likedByUser.computeIfAbsent(userId, id -> new LongArrayList()).add(filmId);
+                likersByFilm.computeIfAbsent(filmId, id -> new LongArrayList()).add(userId);
+            });
+            Model model = new Model();
+            likersByFilm.forEach((filmId, likers) -> model.filmLikers.put(filmId, likers.toSortedSet()));
+            likedByUser.forEach((userId, films) -> {
+                long[] liked = films.toSortedSet();
+                model.userLikes.put(userId, liked);
+                for (int i = 0; i < liked.length; i++) {
+                    for (int j = i + 1; j < liked.length; j++) {
+                        model.row(liked[i]).addTo(liked[j], 1);
+                        model.row(liked[j]).addTo(liked[i], 1);
+                    }
+                }
+            });
+            return model;
+        }
+
+        private void like(long filmId, long userId) {
+            long[] liked = userLikes.getOrDefault(userId, SortedArrays.EMPTY_LONGS);
+            if (SortedArrays.contains(liked, filmId)) {
+                return;
+            }
+            for (long other : liked) {
+                row(filmId).addTo(other, 1);
+                row(other).addTo(filmId, 1);
+            }
+            userLikes.put(userId, SortedArrays.insert(liked, filmId));
+            filmLikers.put(filmId, SortedArrays.insert(filmLikers.getOrDefault(filmId, SortedArrays.EMPTY_LONGS), userId));
+        }
+
+        private void unlike(long filmId, long userId) {
+            long[] liked = userLikes.getOrDefault(userId, SortedArrays.EMPTY_LONGS);
+            if (!SortedArrays.contains(liked, filmId)) {
+                return;
+            }
+            liked = SortedArrays.remove(liked, filmId);
+            for (long other : liked) {
+                decrement(filmId, other);
+                decrement(other, filmId);
+            }
+            putOrRemove(userLikes, userId, liked);
+            putOrRemove(filmLikers, filmId, SortedArrays.remove(filmLikers.get(filmId), userId));
+        }
+
+        private void removeFilm(long filmId) {
+            for (long userId : filmLikers.getOrDefault(filmId, SortedArrays.EMPTY_LONGS)) {
+                unlike(filmId, userId);
+            }
+        }
+
+        private void removeUser(long userId) {
+            for (long filmId : userLikes.getOrDefault(userId, SortedArrays.EMPTY_LONGS)) {
+                unlike(filmId, userId);
+            }
+        }
+
+        private LongIntHashMap row(long filmId) {
+            return coLikes.computeIfAbsent(filmId, id -> new LongIntHashMap());
+        }
+
+        private void decrement(long filmId, long other) {
+            LongIntHashMap row = coLikes.get(filmId);
+            row.addTo(other, -1);
+            if (row.isEmpty()) {
+                coLikes.remove(filmId);
+            }
+        }
+
+        private int likersCount(long filmId) {
+            return filmLikers.getOrDefault(filmId, SortedArrays.EMPTY_LONGS).length;
+        }
+
+        private static void putOrRemove(Map<Long, long[]> map, long key, long[] values) {
+            if (values.length == 0) {
+                map.remove(key);
+            } else {
+                map.put(key, values);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Граф дружбы в памяти процесса. Каждому встреченному пользователю назначается плотный номер,
+// списки друзей хранятся отсортированными массивами int этих номеров - вдвое компактнее long ID,
+// а общие друзья считаются в обычном массиве счётчиков без хеширования.
+// Дружба односторонняя, как в таблице friendship: ребро идёт от пользователя к добавленному другу.
+@Component
+public class FriendGraphIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private Graph graph = new Graph(16);
+    // Изменения, пришедшие во время перестройки: после неё они повторяются на новом графе
+    private List<Consumer<Graph>> changesDuringRebuild;
+    // Массивы счётчиков переиспользуются между запросами: запросы идут в виртуальных потоках,
+    // поэтому ThreadLocal не помог бы, а массив на каждый запрос рос бы вместе с числом пользователей
+    private final Queue<int[]> counters = new ConcurrentLinkedQueue<>();
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            graph = new Graph(16);
+            counters.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Полная перестройка по всем связям дружбы. Новый граф строится без блокировки: друзья
+    // собираются по пользователям, и каждый массив сортируется один раз. Готовый граф подменяет
+    // текущий, изменения за время перестройки повторяются на нём, поэтому не теряются.
+    public void rebuild(Consumer<UserStorage.FriendshipConsumer> friendships) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Graph rebuilt = null;
+            try {
+                rebuilt = Graph.build(friendships);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (rebuilt != null) {
+                        for (Consumer<Graph> change : changesDuringRebuild) {
+                            change.accept(rebuilt);
+                        }
+                        graph = rebuilt;
+                        counters.clear();
+                    }
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        change(graph -> graph.addFriend(userId, friendId));
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        change(graph -> graph.removeFriend(userId, friendId));
+    }
+
+    // Удалённый пользователь пропадает и из своих связей, и из списков друзей других пользователей
+    public void removeUser(long userId) {
+        change(graph -> graph.removeUser(userId));
+    }
+
+    // ID друзей пользователя в порядке добавления пользователей в граф
+    public long[] getFriendIds(long userId) {
+        lock.readLock().lock();
+        try {
+            Graph graph = this.graph;
+            Integer user = graph.indexes.get(userId);
+            if (user == null) {
+                return SortedArrays.EMPTY_LONGS;
+            }
+            int[] direct = graph.friends[user];
+            long[] ids = new long[direct.length];
+            for (int i = 0; i < direct.length; i++) {
+                ids[i] = graph.userIds[direct[i]];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // До limit друзей друзей, которых пользователь ещё не добавил, по убыванию числа общих друзей,
+    // при равенстве - по возрастанию ID. Обход двухшаговый: друзья пользователя и их друзья.
+    public List<Long> suggest(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            Graph graph = this.graph;
+            Integer user = graph.indexes.get(userId);
+            if (user == null) {
+                return List.of();
+            }
+            int[] direct = graph.friends[user];
+            int[] mutual = borrowCounters(graph);
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            try {
+                for (int friend : direct) {
+                    for (int candidate : graph.friends[friend]) {
+                        if (mutual[candidate]++ == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = candidate;
+                        }
+                    }
+                }
+                // Сам пользователь и его друзья отсеиваются один раз на кандидата, а не на каждое ребро
+                PriorityQueue<long[]> heap = new PriorityQueue<>((first, second) -> first[1] != second[1]
+                        ? Long.compare(first[1], second[1]) : Long.compare(second[0], first[0]));
+                for (int i = 0; i < touchedCount; i++) {
+                    int candidate = touched[i];
+                    if (candidate != user && !SortedArrays.contains(direct, candidate)) {
+                        heap.add(new long[]{graph.userIds[candidate], mutual[candidate]});
+                        if (heap.size() > limit) {
+                            heap.poll();
+                        }
+                    }
+                }
+                Long[] ids = new Long[heap.size()];
+                for (int i = ids.length - 1; i >= 0; i--) {
+                    ids[i] = heap.poll()[0];
+                }
+                return List.of(ids);
+            } finally {
+                // Обнуляются только затронутые ячейки, массив возвращается в пул чистым
+                for (int i = 0; i < touchedCount; i++) {
+                    mutual[touched[i]] = 0;
+                }
+                counters.offer(mutual);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Graph> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(graph);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int[] borrowCounters(Graph graph) {
+        int[] mutual = counters.poll();
+        // Массив, выданный до появления новых пользователей, заменяется более длинным
+        return mutual != null && mutual.length >= graph.size ? mutual : new int[graph.userIds.length];
+    }
+
+    // Состояние графа; меняется только под блокировкой записи индекса
+    private static final class Graph {
+        private final Map<Long, Integer> indexes = new HashMap<>();
+        private long[] userIds;
+        private int[][] friends;
+        private int size;
+
+        private Graph(int capacity) {
+            userIds = new long[capacity];
+            friends = new int[capacity][];
+        }
+
+        private static Graph build(Consumer<UserStorage.FriendshipConsumer> friendships) {
+            Map<Long, LongArrayList> friendIds = new HashMap<>();
+            List<Long> users = new ArrayList<>();
+            friendships.accept((userId, friendId) -> {
+                friendIds.computeIfAbsent(userId, id -> {
+                    users.add(id);
+                    return new LongArrayList();
+                }).add(friendId);
+            });
+            Graph graph = new Graph(Math.max(16, Integer.highestOneBit(Math.max(1, users.size())) * 2));
+            for (Long userId : users) {
+                graph.indexOf(userId);
+            }
+            for (Long userId : users) {
+                long[] ids = friendIds.get(userId).toSortedSet();
+                int[] direct = new int[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    direct[i] = graph.indexOf(ids[i]);
+                }
+                Arrays.sort(direct);
+                graph.friends[graph.indexes.get(userId)] = direct;
+            }
+            return graph;
+        }
+
+        private void addFriend(long userId, long friendId) {
+            int user = indexOf(userId);
+            friends[user] = SortedArrays.insert(friends[user], indexOf(friendId));
+        }
+
+        private void removeFriend(long userId, long friendId) {
+            Integer user = indexes.get(userId);
+            Integer friend = indexes.get(friendId);
+            if (user != null && friend != null) {
+                friends[user] = SortedArrays.remove(friends[user], friend);
+            }
+        }
+
+        private void removeUser(long userId) {
+            Integer user = indexes.remove(userId);
+            if (user == null) {
+                return;
+            }
+            // Номер пользователя не переиспользуется: ячейка остаётся пустой
+            friends[user] = SortedArrays.EMPTY_INTS;
+            for (int i = 0; i < size; i++) {
+                friends[i] = SortedArrays.remove(friends[i], user);
+            }
+        }
+
+        private int indexOf(long userId) {
+            Integer index = indexes.get(userId);
+            if (index != null) {
+                return index;
+            }
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+                friends = Arrays.copyOf(friends, size * 2);
+            }
+            userIds[size] = userId;
+            friends[size] = SortedArrays.EMPTY_INTS;
+            indexes.put(userId, size);
+            return size++;
+        }
+    }
+}
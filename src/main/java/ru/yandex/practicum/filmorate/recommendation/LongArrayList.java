@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+
+// Растущий список long без упаковки. Нужен при полной перестройке моделей: значения копятся
+// в порядке чтения из таблицы и сортируются один раз, а не вставкой в отсортированный массив.
+final class LongArrayList {
+    private long[] values = new long[4];
+    private int size;
+
+    void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    // Отсортированный массив значений без повторов
+    long[] toSortedSet() {
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+// Карта long -> int с открытой адресацией и линейным пробированием: ключи и значения лежат
+// в примитивных массивах без упаковки. Ключи - положительные ID, 0 означает пустую ячейку.
+final class LongIntHashMap {
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap() {
+        keys = new long[MIN_CAPACITY];
+        values = new int[MIN_CAPACITY];
+        mask = MIN_CAPACITY - 1;
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    int get(long key) {
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    // Прибавляет delta к значению ключа; ключ, значение которого стало нулём, удаляется
+    void addTo(long key, int delta) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Ключ должен быть положительным");
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                if (values[slot] == 0) {
+                    removeAt(slot);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (delta == 0) {
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        // Заполнение держится не выше половины, чтобы цепочки пробирования оставались короткими
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // Удаление со сдвигом: следующие записи цепочки переезжают в освободившуюся ячейку,
+    // если она лежит между их исходной ячейкой и текущей, поэтому надгробия не нужны
+    private void removeAt(int removed) {
+        int hole = removed;
+        for (int slot = (hole + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
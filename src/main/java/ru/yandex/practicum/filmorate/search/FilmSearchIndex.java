@@ -0,0 +1,314 @@
+package ru.yandex.practicum.filmorate.search;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Обратный индекс по названию и описанию фильмов в памяти процесса.
+// Термы хранятся в упорядоченной карте, поэтому префиксный поиск - это выборка подкарты.
+// Индекс обновляется сервисом при каждом изменении фильма и не обращается к базе сам.
+@Component
+public class FilmSearchIndex {
+    private static final double NAME_WEIGHT = 3;
+    private static final double DESCRIPTION_WEIGHT = 1;
+    // Совпадение по префиксу терма весит меньше точного
+    private static final double PREFIX_FACTOR = 0.5;
+    // Более короткие слова запроса ищутся только точно, иначе префикс захватит половину словаря
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Окончания отсекаются по одному, самые длинные проверяются первыми
+    private static final String[] ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими",
+            "ая", "яя", "ое", "ее", "ие", "ые", "ой", "ей", "ий", "ый", "ом", "ем", "ам", "ям", "ах", "ях",
+            "ов", "ев", "ую", "юю",
+            "а", "я", "ы", "и", "е", "у", "ю", "о", "ь", "й",
+            "ing", "ed", "s"
+    };
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    // терм -> (ID фильма -> вес терма в фильме)
+    private NavigableMap<String, Map<Long, Double>> postings = new TreeMap<>();
+    // ID фильма -> (терм -> вес), нужны для проверки кандидатов, переиндексации и удаления
+    private Map<Long, Map<String, Double>> filmTerms = new HashMap<>();
+    // Число лайков меняется при каждом лайке, поэтому хранится отдельно от термов в атомарных
+    // счётчиках и обновляется под блокировкой чтения: лайки не ждут поиска и не блокируют его
+    private Map<Long, AtomicInteger> likes = new ConcurrentHashMap<>();
+    // Изменения, пришедшие во время перестройки: после неё они повторяются на новом индексе.
+    // Лайки добавляются сюда под блокировкой чтения, поэтому очередь конкурентная
+    private Queue<Consumer<FilmSearchIndex>> changesDuringRebuild;
+
+    public void rebuild(Collection<Entry> entries) {
+        rebuild(entries::forEach);
+    }
+
+    // Полная перестройка. Новый индекс строится отдельным экземпляром без блокировки, пока
+    // источник читает фильмы, и затем подменяет термы и счётчики текущего. Изменения, пришедшие
+    // за это время, повторяются на новом индексе. Лайк, записанный в таблицу прямо перед чтением,
+    // может учесться дважды; счётчик влияет только на порядок одинаково релевантных фильмов.
+    public void rebuild(Consumer<Consumer<Entry>> entries) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = new ConcurrentLinkedQueue<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            FilmSearchIndex rebuilt = null;
+            try {
+                FilmSearchIndex building = new FilmSearchIndex();
+                entries.accept(building::put);
+                rebuilt = building;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (rebuilt != null) {
+                        for (Consumer<FilmSearchIndex> change : changesDuringRebuild) {
+                            change.accept(rebuilt);
+                        }
+                        postings = rebuilt.postings;
+                        filmTerms = rebuilt.filmTerms;
+                        likes = rebuilt.likes;
+                    }
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Добавляет фильм или заменяет его термы; число лайков уже проиндексированного фильма сохраняется
+    public void index(Film film) {
+        Entry entry = Entry.of(film);
+        lock.writeLock().lock();
+        try {
+            put(entry);
+            record(index -> index.put(entry));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(filmId);
+            record(index -> index.removeFilm(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(Long filmId, int delta) {
+        lock.readLock().lock();
+        try {
+            addLikes(filmId, delta);
+            record(index -> index.addLikes(filmId, delta));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Возвращает ID до limit фильмов, содержащих все слова запроса, по убыванию релевантности и лайков
+    public List<Long> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new HashSet<>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            // Кандидаты берутся по самому редкому слову, остальные слова проверяются только у них,
+            // поэтому частые слова вроде "фильм" не заставляют перебирать весь каталог
+            terms.sort(Comparator.comparingInt(this::postingCount));
+            Map<Long, Double> scores = match(terms.get(0));
+            for (String term : terms.subList(1, terms.size())) {
+                Iterator<Map.Entry<Long, Double>> candidates = scores.entrySet().iterator();
+                while (candidates.hasNext()) {
+                    Map.Entry<Long, Double> candidate = candidates.next();
+                    double score = termScore(candidate.getKey(), term);
+                    if (score == 0) {
+                        candidates.remove();
+                    } else {
+                        candidate.setValue(candidate.getValue() + score);
+                    }
+                }
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return filmTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT).replace('ё', 'е'))) {
+            if (!word.isEmpty()) {
+                tokens.add(stem(word));
+            }
+        }
+        return tokens;
+    }
+
+    // Лёгкий стемминг: отбрасывается одно окончание, чтобы "матрица" и "матрицы" давали один терм
+    private static String stem(String word) {
+        for (String ending : ENDINGS) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    private void record(Consumer<FilmSearchIndex> change) {
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    private void removeFilm(Long filmId) {
+        removeTerms(filmId);
+        likes.remove(filmId);
+    }
+
+    private void addLikes(Long filmId, int delta) {
+        AtomicInteger count = likes.get(filmId);
+        if (count != null) {
+            count.updateAndGet(current -> Math.max(0, current + delta));
+        }
+    }
+
+    private void put(Entry entry) {
+        Long filmId = entry.filmId();
+        removeTerms(filmId);
+        Map<String, Double> weights = new HashMap<>();
+        tokenize(entry.name()).forEach(term -> weights.merge(term, NAME_WEIGHT, Math::max));
+        tokenize(entry.description()).forEach(term -> weights.merge(term, DESCRIPTION_WEIGHT, Math::max));
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(filmId, weight));
+        filmTerms.put(filmId, weights);
+        likes.putIfAbsent(filmId, new AtomicInteger(entry.likes()));
+    }
+
+    private void removeTerms(Long filmId) {
+        Map<String, Double> terms = filmTerms.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Double> films = postings.get(term);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private int postingCount(String term) {
+        int count = postings.getOrDefault(term, Map.of()).size();
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            for (Map<Long, Double> films : prefixed(term).values()) {
+                count += films.size();
+            }
+        }
+        return count;
+    }
+
+    private NavigableMap<String, Map<Long, Double>> prefixed(String term) {
+        return postings.subMap(term, false, term + Character.MAX_VALUE, false);
+    }
+
+    private double termScore(Long filmId, String term) {
+        double best = 0;
+        for (Map.Entry<String, Double> filmTerm : filmTerms.get(filmId).entrySet()) {
+            if (filmTerm.getKey().equals(term)) {
+                best = Math.max(best, filmTerm.getValue());
+            } else if (term.length() >= MIN_PREFIX_LENGTH && filmTerm.getKey().startsWith(term)) {
+                best = Math.max(best, filmTerm.getValue() * PREFIX_FACTOR);
+            }
+        }
+        return best;
+    }
+
+    private Map<Long, Double> match(String term) {
+        Map<Long, Double> matches = new HashMap<>();
+        Map<Long, Double> exact = postings.get(term);
+        if (exact != null) {
+            matches.putAll(exact);
+        }
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            prefixed(term).values().forEach(films ->
+                    films.forEach((id, weight) -> matches.merge(id, weight * PREFIX_FACTOR, Math::max)));
+        }
+        return matches;
+    }
+
+    // Частичная сортировка кучей размера limit: полностью упорядочивать все совпадения не нужно.
+    // Лайки меняются без блокировки, поэтому у каждого кандидата они читаются один раз до сравнений
+    private List<Long> top(Map<Long, Double> scores, int limit) {
+        Comparator<Candidate> ranking = Comparator.comparingDouble(Candidate::score)
+                .thenComparingInt(Candidate::likes)
+                .thenComparing(Candidate::filmId, Comparator.reverseOrder());
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(ranking);
+        scores.forEach((filmId, score) -> {
+            AtomicInteger count = likes.get(filmId);
+            heap.add(new Candidate(filmId, score, count == null ? 0 : count.get()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        Long[] ids = new Long[heap.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = heap.poll().filmId();
+        }
+        return List.of(ids);
+    }
+
+    // Индексируемые поля фильма: название, описание и число лайков
+    public record Entry(long filmId, String name, String description, int likes) {
+        public static Entry of(Film film) {
+            return new Entry(film.getId(), film.getName(), film.getDescription(),
+                    film.getLikes() == null ? 0 : film.getLikes().size());
+        }
+    }
+
+    private record Candidate(Long filmId, double score, int likes) {
+    }
+}
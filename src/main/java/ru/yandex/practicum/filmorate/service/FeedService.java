@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.recommendation.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+@Service
+@Slf4j
+public class FeedService {
+    private final FeedStorage feedStorage;
+    private final UserStorage userStorage;
+    private final FriendGraphIndex friendGraph;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    @Autowired
+    public FeedService(
+            @Qualifier("inMemoryFeedStorage") FeedStorage feedStorage,
+            @Qualifier("userDbStorage") UserStorage userStorage,
+            FriendGraphIndex friendGraph,
+            @Value("${filmorate.pagination.default-limit:100}") int defaultPageSize,
+            @Value("${filmorate.pagination.max-limit:1000}") int maxPageSize
+    ) {
+        this.feedStorage = feedStorage;
+        this.userStorage = userStorage;
+        this.friendGraph = friendGraph;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // Лента пользователя - события его друзей от новых к старым; курсор - ID последнего полученного события
+    public Page<Event> getFeed(Long userId, Long before, Integer limit) {
+        int pageSize = Page.resolveLimit(limit, defaultPageSize, maxPageSize);
+        log.info("Получение ленты пользователя с id {} до события {} размером {}", userId, before, pageSize);
+        if (!userStorage.existsById(userId)) {
+            throw new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        // Друзья берутся из графа в памяти, поэтому чтение ленты не обращается к таблице дружбы
+        long[] friendIds = friendGraph.getFriendIds(userId);
+        long beforeEventId = before == null ? Long.MAX_VALUE : before;
+        return Page.of(feedStorage.getEvents(friendIds, beforeEventId, pageSize + 1), pageSize, Event::getEventId);
+    }
+}
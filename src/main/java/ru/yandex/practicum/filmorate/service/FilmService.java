@@ -3,15 +3,23 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
-import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
 
+import java.io.InputStream;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -20,18 +28,36 @@ public class FilmService {
     private final UserStorage userStorage;
     private final MpaService mpaService;
     private final GenreService genreService;
+    private final NdjsonImporter ndjsonImporter;
+    private final FilmSearchIndex searchIndex;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final FeedStorage feedStorage;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     @Autowired
     public FilmService(
             @Qualifier("filmDbStorage") FilmStorage filmStorage,
             @Qualifier("userDbStorage") UserStorage userStorage,
             MpaService mpaService,
-            GenreService genreService
+            GenreService genreService,
+            NdjsonImporter ndjsonImporter,
+            FilmSearchIndex searchIndex,
+            FilmRecommendationIndex recommendationIndex,
+            @Qualifier("inMemoryFeedStorage") FeedStorage feedStorage,
+            @Value("${filmorate.pagination.default-limit:100}") int defaultPageSize,
+            @Value("${filmorate.pagination.max-limit:1000}") int maxPageSize
     ) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaService = mpaService;
         this.genreService = genreService;
+        this.ndjsonImporter = ndjsonImporter;
+        this.searchIndex = searchIndex;
+        this.recommendationIndex = recommendationIndex;
+        this.feedStorage = feedStorage;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     public Film addFilm(Film film) {
@@ -43,16 +69,25 @@ public class FilmService {
 
         // Добавляем фильм в хранилище
         Film addedFilm = filmStorage.addFilm(film);
+        searchIndex.index(addedFilm);
         log.info("Фильм добавлен успешно: {}", addedFilm);
 
         return addedFilm;
     }
 
+    public BulkImportResult importFilms(InputStream body) {
+        log.info("Начало потоковой загрузки фильмов");
+        return ndjsonImporter.importRecords(body, Film.class, film -> {
+            mpaService.validateMpa(film.getMpa());
+            genreService.validateGenres(film.getGenres());
+        }, films -> filmStorage.addFilms(films).forEach(this::indexImported));
+    }
+
     public Film updateFilm(Film film) {
         log.info("Начало обновления фильма: {}", film);
 
         // Проверяем, существует ли фильм
-        if (filmStorage.getFilmById(film.getId()).isEmpty()) {
+        if (!filmStorage.existsById(film.getId())) {
             throw new ResourceNotFoundException("Фильм с id " + film.getId() + " не найден");
         }
 
@@ -62,75 +97,126 @@ public class FilmService {
 
         // Обновляем фильм в хранилище
         Film updatedFilm = filmStorage.updateFilm(film);
+        searchIndex.index(updatedFilm);
         log.info("Фильм обновлен успешно: {}", updatedFilm);
 
         return updatedFilm;
     }
 
+    public void deleteFilm(Long id) {
+        log.info("Удаление фильма с id: {}", id);
+        if (!filmStorage.existsById(id)) {
+            throw new ResourceNotFoundException("Фильм с id " + id + " не найден");
+        }
+        filmStorage.deleteFilm(id);
+        searchIndex.remove(id);
+        recommendationIndex.removeFilm(id);
+        log.info("Фильм с id {} удален", id);
+    }
+
     public Film getFilmById(Long id) {
         log.info("Получение фильма с id: {}", id);
         return filmStorage.getFilmById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Фильм с id " + id + " не найден"));
     }
 
-    public List<Film> getAllFilms() {
-        log.info("Получение всех фильмов");
-        return filmStorage.getAllFilms();
+    public long getFilmVersion(Long id) {
+        return filmStorage.getFilmVersion(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Фильм с id " + id + " не найден"));
     }
 
-    public void addLike(Long filmId, Long userId) {
-        log.info("Проверка наличия фильма для добавления лайка");
-        Film film = filmStorage.getFilmById(filmId)
-                .orElseThrow(() -> new ResourceNotFoundException("Фильм с id " + filmId + " не найден"));
+    public Page<Film> getFilms(long after, Integer limit) {
+        int pageSize = Page.resolveLimit(limit, defaultPageSize, maxPageSize);
+        log.info("Получение страницы фильмов после id {} размером {}", after, pageSize);
+        return Page.of(filmStorage.getFilmsPage(after, pageSize + 1), pageSize, Film::getId);
+    }
 
-        log.info("Проверка наличия пользователя для добавления лайка");
-        userStorage.getUserById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь с id " + userId + " не найден"));
+    public boolean addLike(Long filmId, Long userId) {
+        log.info("Проверка наличия фильма и пользователя для добавления лайка");
+        requireFilmAndUser(filmId, userId);
 
         log.info("Добавление лайка");
-        if (filmStorage instanceof FilmDbStorage) {
-            // Если используется FilmDbStorage, обновляем таблицу likes
-            ((FilmDbStorage) filmStorage).addLike(filmId, userId);
-        } else {
-            // Если используется InMemoryFilmStorage, обновляем объект Film
-            film.getLikes().add(userId);
-            filmStorage.updateFilm(film);
+        boolean added = filmStorage.addLike(filmId, userId);
+        if (added) {
+            searchIndex.changeLikes(filmId, 1);
+            recommendationIndex.addLike(filmId, userId);
+            feedStorage.addEvent(userId, Event.EventType.LIKE, Event.Operation.ADD, filmId);
         }
 
-        log.info("Пользователь с id {} добавил лайк фильму с id {}", userId, filmId);
+        log.info("Пользователь с id {} добавил лайк фильму с id {}, изменения: {}", userId, filmId, added);
+        return added;
     }
 
-    public void removeLike(Long filmId, Long userId) {
-        log.info("Проверка наличия фильма для удаления лайка");
-        Film film = filmStorage.getFilmById(filmId)
-                .orElseThrow(() -> new ResourceNotFoundException("Фильм с id " + filmId + " не найден"));
-
-        log.info("Проверка наличия пользователя для удаления лайка");
-        userStorage.getUserById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь с id " + userId + " не найден"));
+    public boolean removeLike(Long filmId, Long userId) {
+        log.info("Проверка наличия фильма и пользователя для удаления лайка");
+        requireFilmAndUser(filmId, userId);
 
         log.info("Удаление лайка");
-        if (filmStorage instanceof FilmDbStorage) {
-            // Если используется FilmDbStorage, удаляем запись из таблицы likes
-            ((FilmDbStorage) filmStorage).removeLike(filmId, userId);
-        } else {
-            // Если используется InMemoryFilmStorage, обновляем объект Film
-            film.getLikes().remove(userId);
-            filmStorage.updateFilm(film);
+        boolean removed = filmStorage.removeLike(filmId, userId);
+        if (removed) {
+            searchIndex.changeLikes(filmId, -1);
+            recommendationIndex.removeLike(filmId, userId);
+            feedStorage.addEvent(userId, Event.EventType.LIKE, Event.Operation.REMOVE, filmId);
         }
 
-        log.info("Пользователь с id {} удалил лайк у фильма с id {}", userId, filmId);
+        log.info("Пользователь с id {} удалил лайк у фильма с id {}, изменения: {}", userId, filmId, removed);
+        return removed;
     }
 
     public List<Film> getMostPopularFilms(int count) {
-        log.info("Начало получения {} самых популярных фильмов", count);
-        List<Film> films = filmStorage.getAllFilms();
+        return getMostPopularFilms(count, null, null, null);
+    }
 
-        log.info("Сортировка фильмов по количеству лайков");
-        films.sort((f1, f2) -> Integer.compare(f2.getLikes().size(), f1.getLikes().size()));
+    public List<Film> getMostPopularFilms(int count, Long genreId, Long mpaId, Integer year) {
+        log.info("Начало получения {} самых популярных фильмов (жанр: {}, рейтинг: {}, год: {})",
+                count, genreId, mpaId, year);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество фильмов должно быть положительным");
+        }
+        if (year != null && (year < 1 || year > 9999)) {
+            throw new IllegalArgumentException("Год выпуска должен быть в диапазоне от 1 до 9999");
+        }
+        return filmStorage.getMostPopularFilms(count, genreId, mpaId, year);
+    }
 
-        return films.stream()
-                .limit(count)
-                .collect(Collectors.toList());
+    public List<Film> searchFilms(String query, int count) {
+        log.info("Поиск {} фильмов по запросу: {}", count, query);
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Поисковый запрос не может быть пустым");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество фильмов должно быть положительным");
+        }
+        // Индекс отдаёт упорядоченные ID, из хранилища загружаются только они
+        return filmStorage.getFilmsByIds(searchIndex.search(query, count));
+    }
+
+    // Индекс живёт в памяти процесса, поэтому после запуска строится заново по всем фильмам.
+    // Читаются только нужные индексу колонки, жанры и лайки фильмов не загружаются
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildSearchIndex() {
+        searchIndex.rebuild(entries -> filmStorage.forEachFilmSummary((filmId, name, description, likes) ->
+                entries.accept(new FilmSearchIndex.Entry(filmId, name, description, likes))));
+        log.info("Поисковый индекс построен по {} фильмам", searchIndex.size());
+    }
+
+    // Фильмы уже сохранены: сбой индекса не должен превращаться в ошибку записи и повтор пачки,
+    // индекс перестраивается при следующем запуске
+    private void indexImported(Film film) {
+        try {
+            searchIndex.index(film);
+        } catch (RuntimeException e) {
+            log.error("Не удалось добавить в поисковый индекс фильм с id {}", film.getId(), e);
+        }
+    }
+
+    // Проверка по первичному ключу: фильм и пользователь не загружаются целиком
+    private void requireFilmAndUser(Long filmId, Long userId) {
+        if (!filmStorage.existsById(filmId)) {
+            throw new ResourceNotFoundException("Фильм с id " + filmId + " не найден");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
+        }
     }
 }
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Построчно разбирает NDJSON, проверяет каждую запись и передаёт их на запись пачками.
+// В памяти одновременно находится не больше одной пачки.
+@Component
+@Slf4j
+public class NdjsonImporter {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public NdjsonImporter(
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${filmorate.bulk.batch-size:500}") int batchSize,
+            @Value("${filmorate.bulk.max-reported-errors:1000}") int maxReportedErrors
+    ) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public <T> BulkImportResult importRecords(InputStream body, Class<T> type, Consumer<List<T>> writer) {
+        return importRecords(body, type, record -> {
+        }, writer);
+    }
+
+    // check выбрасывает IllegalArgumentException для некорректной записи. writer сохраняет пачку
+    // целиком или не сохраняет ничего (одна транзакция): отклонённая пачка повторяется по записям
+    public <T> BulkImportResult importRecords(InputStream body, Class<T> type,
+                                              Consumer<T> check, Consumer<List<T>> writer) {
+        BulkImportResult result = new BulkImportResult(maxReportedErrors);
+        ObjectReader reader = objectMapper.readerFor(type);
+        List<T> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    T record = reader.readValue(line);
+                    validate(record);
+                    check.accept(record);
+                    batch.add(record);
+                    batchLines.add(lineNumber);
+                } catch (JsonProcessingException e) {
+                    result.addError(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+                } catch (IllegalArgumentException e) {
+                    result.addError(lineNumber, e.getMessage());
+                }
+                if (batch.size() >= batchSize) {
+                    flush(batch, batchLines, writer, result);
+                }
+            }
+            flush(batch, batchLines, writer, result);
+        } catch (IOException e) {
+            log.error("Ошибка чтения потока загрузки: {}", e.getMessage());
+            throw new RuntimeException("Ошибка чтения тела запроса", e);
+        }
+
+        log.info("Загрузка {} завершена: добавлено {}, ошибок {}",
+                type.getSimpleName(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private <T> void validate(T record) {
+        Set<ConstraintViolation<T>> violations = validator.validate(record);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    // Пачка пишется одним вызовом writer. Если она отклонена (например, база не приняла одну из строк),
+    // записи повторяются по одной: остальные строки пачки сохраняются, а каждая ошибка
+    // попадает в отчёт со своей строкой и причиной
+    private <T> void flush(List<T> batch, List<Long> batchLines, Consumer<List<T>> writer, BulkImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(batch);
+            result.addImported(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Пачка из {} записей не записана, повтор по одной записи: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    writer.accept(List.of(batch.get(i)));
+                    result.addImported(1);
+                } catch (RuntimeException recordError) {
+                    result.addError(batchLines.get(i), errorMessage(recordError));
+                }
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        if (e instanceof DataAccessException dataAccessError) {
+            return "Ошибка записи в хранилище: " + dataAccessError.getMostSpecificCause().getMessage();
+        }
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+}
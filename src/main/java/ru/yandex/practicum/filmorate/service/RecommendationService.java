@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+
+@Service
+@Slf4j
+public class RecommendationService {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmRecommendationIndex recommendationIndex;
+
+    @Autowired
+    public RecommendationService(
+            @Qualifier("filmDbStorage") FilmStorage filmStorage,
+            @Qualifier("userDbStorage") UserStorage userStorage,
+            FilmRecommendationIndex recommendationIndex
+    ) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.recommendationIndex = recommendationIndex;
+    }
+
+    public List<Film> getRecommendations(Long userId, int count) {
+        log.info("Получение {} рекомендаций для пользователя с id: {}", count, userId);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество фильмов должно быть положительным");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        // Модель отдаёт упорядоченные ID, из хранилища загружаются только они
+        return filmStorage.getFilmsByIds(recommendationIndex.recommend(userId, count));
+    }
+
+    // Модель живёт в памяти процесса, поэтому после запуска строится заново по таблице лайков;
+    // дальше её поддерживает FilmService при каждом изменении лайков
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildRecommendationIndex() {
+        recommendationIndex.rebuild(filmStorage::forEachLike);
+        log.info("Модель рекомендаций построена");
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.InMemorySnapshotStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Снимки хранилищ в памяти (filmorate.snapshot.enabled): восстановление при запуске,
+// периодическая запись раз в filmorate.snapshot.interval и запись при штатной остановке
+@Service
+@Slf4j
+public class SnapshotService {
+    private final InMemorySnapshotStorage snapshotStorage;
+    private final boolean enabled;
+    private final Path path;
+    // Снимок, который не удалось ни восстановить, ни отложить в сторону, нельзя перезаписывать:
+    // запись отключается до вмешательства оператора
+    private volatile boolean savingBlocked;
+
+    @Autowired
+    public SnapshotService(InMemorySnapshotStorage snapshotStorage,
+                           @Value("${filmorate.snapshot.enabled:false}") boolean enabled,
+                           @Value("${filmorate.snapshot.path:./db/inmemory.snapshot}") Path path) {
+        this.snapshotStorage = snapshotStorage;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    // Восстановление идёт до запуска веб-сервера, поэтому запросы не увидят пустые хранилища.
+    // Повреждённый снимок не мешает запуску: хранилища остаются пустыми, а файл переименовывается
+    // в <path>.corrupt-<время>, чтобы следующая запись не затёрла его снимком пустых хранилищ
+    @PostConstruct
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        if (!Files.exists(path)) {
+            log.info("Снимок {} не найден, хранилища в памяти начинают пустыми", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            InMemorySnapshotStorage.Summary summary = snapshotStorage.restore(path);
+            log.info("Из снимка {} восстановлено фильмов: {}, пользователей: {} за {} мс", path,
+                    summary.films(), summary.users(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось восстановить снимок {}", path, e);
+            moveAside();
+        }
+    }
+
+    private void moveAside() {
+        Path corrupt = path.resolveSibling(path.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.move(path, corrupt);
+            log.warn("Повреждённый снимок сохранён как {}", corrupt);
+        } catch (IOException | RuntimeException e) {
+            savingBlocked = true;
+            log.error("Не удалось переименовать повреждённый снимок {}, запись снимков отключена", path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.snapshot.interval:PT5M}",
+            initialDelayString = "${filmorate.snapshot.interval:PT5M}")
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+        if (savingBlocked) {
+            log.warn("Запись снимка {} пропущена: прежний снимок повреждён и не был переименован", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            InMemorySnapshotStorage.Summary summary = snapshotStorage.save(path);
+            log.info("Записан снимок {}: фильмов: {}, пользователей: {} за {} мс", path,
+                    summary.films(), summary.users(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать снимок {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        save();
+    }
+}
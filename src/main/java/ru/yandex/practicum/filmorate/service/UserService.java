@@ -3,23 +3,56 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.recommendation.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
-import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
 
+import java.io.InputStream;
 import java.util.List;
 
 @Service
 @Slf4j
 public class UserService {
     private final UserStorage userStorage;
+    private final NdjsonImporter ndjsonImporter;
+    private final FriendGraphIndex friendGraph;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FeedStorage feedStorage;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(
+            @Qualifier("userDbStorage") UserStorage userStorage,
+            NdjsonImporter ndjsonImporter,
+            FriendGraphIndex friendGraph,
+            FilmRecommendationIndex recommendationIndex,
+            FilmSearchIndex searchIndex,
+            @Qualifier("inMemoryFeedStorage") FeedStorage feedStorage,
+            @Value("${filmorate.pagination.default-limit:100}") int defaultPageSize,
+            @Value("${filmorate.pagination.max-limit:1000}") int maxPageSize
+    ) {
         log.debug("Инициализация UserService с хранилищем: {}", userStorage.getClass().getSimpleName());
         this.userStorage = userStorage;
+        this.ndjsonImporter = ndjsonImporter;
+        this.friendGraph = friendGraph;
+        this.recommendationIndex = recommendationIndex;
+        this.searchIndex = searchIndex;
+        this.feedStorage = feedStorage;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     public User addUser(User user) {
@@ -27,6 +60,11 @@ public class UserService {
         return userStorage.addUser(user);
     }
 
+    public BulkImportResult importUsers(InputStream body) {
+        log.info("Начало потоковой загрузки пользователей");
+        return ndjsonImporter.importRecords(body, User.class, userStorage::addUsers);
+    }
+
     public User updateUser(User user) {
         log.info("Обновление пользователя: {}", user);
         return userStorage.updateUser(user);
@@ -41,99 +79,104 @@ public class UserService {
                 });
     }
 
-    public List<User> getAllUsers() {
-        log.info("Получение всех пользователей");
-        List<User> users = userStorage.getAllUsers();
-        log.info("Получено пользователей: {}", users.size());
-        return users;
+    public long getUserVersion(Long id) {
+        return userStorage.getUserVersion(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь с id " + id + " не найден"));
     }
 
-    public User addFriend(Long userId, Long friendId) {
-        log.info("Добавление друга с ID: {} пользователю с ID: {}", friendId, userId);
+    public Page<User> getUsers(long after, Integer limit) {
+        int pageSize = Page.resolveLimit(limit, defaultPageSize, maxPageSize);
+        log.info("Получение страницы пользователей после id {} размером {}", after, pageSize);
+        Page<User> page = Page.of(userStorage.getUsersPage(after, pageSize + 1), pageSize, User::getId);
+        log.info("Получено пользователей: {}", page.getItems().size());
+        return page;
+    }
 
-        userStorage.getUserById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь с ID {} не найден", userId);
-                    return new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
-                });
+    public void deleteUser(Long id) {
+        log.info("Удаление пользователя с ID: {}", id);
+        requireUser(id);
+        userStorage.deleteUser(id);
+        friendGraph.removeUser(id);
+        // Модель рекомендаций получает те же лайки, что и счётчики поиска, включая ещё не записанные
+        // в таблицу, поэтому по её данным счётчики уменьшаются ровно на лайки пользователя
+        for (long filmId : recommendationIndex.removeUser(id)) {
+            searchIndex.changeLikes(filmId, -1);
+        }
+        log.info("Пользователь с ID {} удален", id);
+    }
 
-        userStorage.getUserById(friendId)
-                .orElseThrow(() -> {
-                    log.error("Друг с ID {} не найден", friendId);
-                    return new ResourceNotFoundException("Пользователь с id " + friendId + " не найден");
-                });
+    public List<User> getUserFriends(Long userId, boolean includeFriendIds) {
+        log.info("Получение друзей пользователя с ID: {}", userId);
+        requireUser(userId);
+        return userStorage.getFriends(userId, includeFriendIds);
+    }
+
+    public boolean addFriend(Long userId, Long friendId) {
+        log.info("Добавление друга с ID: {} пользователю с ID: {}", friendId, userId);
+
+        requireUser(userId);
+        requireUser(friendId);
 
-        if (userStorage instanceof UserDbStorage) {
-            log.debug("Добавление друга в БД");
-            ((UserDbStorage) userStorage).addFriend(userId, friendId);
-        } else {
-            log.debug("Добавление друга в InMemory хранилище");
-            User user = userStorage.getUserById(userId).orElseThrow();
-            user.getFriends().add(friendId);
-            User friend = userStorage.getUserById(friendId).orElseThrow();
-            friend.getFriends().add(userId);
-            userStorage.updateUser(user);
-            userStorage.updateUser(friend);
+        boolean added = userStorage.addFriend(userId, friendId);
+        if (added) {
+            friendGraph.addFriend(userId, friendId);
+            feedStorage.addEvent(userId, Event.EventType.FRIEND, Event.Operation.ADD, friendId);
         }
 
-        log.info("Друг с ID {} успешно добавлен пользователю с ID {}", friendId, userId);
-        return userStorage.getUserById(userId).orElseThrow();
+        log.info("Друг с ID {} успешно добавлен пользователю с ID {}, изменения: {}", friendId, userId, added);
+        return added;
     }
 
-    public User removeFriend(Long userId, Long friendId) {
+    public boolean removeFriend(Long userId, Long friendId) {
         log.info("Удаление друга с ID: {} у пользователя с ID: {}", friendId, userId);
 
-        userStorage.getUserById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь с ID {} не найден", userId);
-                    return new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
-                });
-
-        userStorage.getUserById(friendId)
-                .orElseThrow(() -> {
-                    log.error("Друг с ID {} не найден", friendId);
-                    return new ResourceNotFoundException("Пользователь с id " + friendId + " не найден");
-                });
+        requireUser(userId);
+        requireUser(friendId);
 
-        if (userStorage instanceof UserDbStorage) {
-            log.debug("Удаление друга из БД");
-            ((UserDbStorage) userStorage).removeFriend(userId, friendId);
-        } else {
-            log.debug("Удаление друга из InMemory хранилища");
-            User user = userStorage.getUserById(userId).orElseThrow();
-            user.getFriends().remove(friendId);
-            User friend = userStorage.getUserById(friendId).orElseThrow();
-            friend.getFriends().remove(userId);
-            userStorage.updateUser(user);
-            userStorage.updateUser(friend);
+        boolean removed = userStorage.removeFriend(userId, friendId);
+        if (removed) {
+            friendGraph.removeFriend(userId, friendId);
+            feedStorage.addEvent(userId, Event.EventType.FRIEND, Event.Operation.REMOVE, friendId);
         }
 
-        log.info("Друг с ID {} успешно удален у пользователя с ID {}", friendId, userId);
-        return userStorage.getUserById(userId).orElseThrow();
+        log.info("Друг с ID {} успешно удален у пользователя с ID {}, изменения: {}", friendId, userId, removed);
+        return removed;
     }
 
     public List<User> getCommonFriends(Long userId, Long otherId) {
         log.info("Получение общих друзей для пользователей с ID: {} и {}", userId, otherId);
 
-        User user = userStorage.getUserById(userId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь с ID {} не найден", userId);
-                    return new ResourceNotFoundException("Пользователь с id " + userId + " не найден");
-                });
-
-        User other = userStorage.getUserById(otherId)
-                .orElseThrow(() -> {
-                    log.error("Пользователь с ID {} не найден", otherId);
-                    return new ResourceNotFoundException("Пользователь с id " + otherId + " не найден");
-                });
+        requireUser(userId);
+        requireUser(otherId);
 
-        user.getFriends().retainAll(other.getFriends());
-        List<User> commonFriends = user.getFriends().stream()
-                .map(id -> userStorage.getUserById(id)
-                        .orElseThrow(() -> new ResourceNotFoundException("Друг с id " + id + " не найден")))
-                .toList();
+        List<User> commonFriends = userStorage.getCommonFriends(userId, otherId);
 
-        log.info("Общие друзья для пользователей с ID: {} и {} найдены: {}", userId, otherId, commonFriends);
+        log.info("Общие друзья для пользователей с ID: {} и {} найдены: {}", userId, otherId, commonFriends.size());
         return commonFriends;
     }
-}
\ No newline at end of file
+
+    public List<User> getFriendSuggestions(Long userId, int count, boolean includeFriendIds) {
+        log.info("Получение {} предложений друзей для пользователя с ID: {}", count, userId);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество пользователей должно быть положительным");
+        }
+        requireUser(userId);
+        // Обход идёт по графу в памяти, из хранилища загружаются только предложенные пользователи
+        return userStorage.getUsersByIds(friendGraph.suggest(userId, count), includeFriendIds);
+    }
+
+    // Граф живёт в памяти процесса, поэтому после запуска строится заново по таблице дружбы
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFriendGraph() {
+        friendGraph.rebuild(userStorage::forEachFriendship);
+        log.info("Граф дружбы построен");
+    }
+
+    // Проверка по первичному ключу без загрузки пользователя и его друзей
+    private void requireUser(Long id) {
+        if (!userStorage.existsById(id)) {
+            log.error("Пользователь с ID {} не найден", id);
+            throw new ResourceNotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+
+public interface FeedStorage {
+    // Записать событие пользователя; ID событий растут в порядке записи
+    Event addEvent(long userId, Event.EventType eventType, Event.Operation operation, long entityId);
+
+    // Получить до limit событий перечисленных пользователей с ID меньше beforeEventId, от новых к старым
+    List<Event> getEvents(long[] userIds, long beforeEventId, int limit);
+}
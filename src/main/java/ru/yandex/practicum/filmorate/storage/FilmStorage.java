@@ -8,12 +8,48 @@ import java.util.Optional;
 public interface FilmStorage {
     Film addFilm(Film film);               // Добавить новый фильм
 
+    List<Film> addFilms(List<Film> films); // Добавить пачку фильмов одной пакетной операцией
+
     Film updateFilm(Film film);            // Обновить существующий фильм
 
     Optional<Film> getFilmById(Long id);   // Получить фильм по его ID
 
+    List<Film> getFilmsByIds(List<Long> ids); // Получить фильмы в порядке переданных ID, отсутствующие пропускаются
+
+    boolean existsById(Long id);           // Проверить существование фильма без загрузки связей
+
+    Optional<Long> getFilmVersion(Long id); // Получить версию фильма, меняющуюся при каждом изменении
+
     void deleteFilm(Long id);              // Удалить фильм по ID
 
     List<Film> getAllFilms();              // Получить все фильмы
+
+    List<Film> getFilmsPage(long afterId, int limit); // Получить до limit фильмов с ID больше afterId
+
+    // Получить count фильмов с наибольшим числом лайков; null в genreId, mpaId или year отключает фильтр
+    List<Film> getMostPopularFilms(int count, Long genreId, Long mpaId, Integer year);
+
+    default List<Film> getMostPopularFilms(int count) {
+        return getMostPopularFilms(count, null, null, null);
+    }
+
+    boolean addLike(Long filmId, Long userId);    // Добавить лайк; false, если лайк уже был
+
+    boolean removeLike(Long filmId, Long userId); // Удалить лайк; false, если лайка не было
+
+    void forEachLike(LikeConsumer consumer);      // Передать потребителю все лайки без загрузки фильмов
+
+    // Передать потребителю название, описание и число лайков всех фильмов без загрузки жанров и лайков
+    void forEachFilmSummary(FilmSummaryConsumer consumer);
+
+    @FunctionalInterface
+    interface LikeConsumer {
+        void accept(long filmId, long userId);
+    }
+
+    @FunctionalInterface
+    interface FilmSummaryConsumer {
+        void accept(long filmId, String name, String description, int likes);
+    }
 }
 
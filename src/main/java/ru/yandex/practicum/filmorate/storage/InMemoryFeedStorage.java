@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Лента хранит только недавнюю историю: у каждого пользователя кольцевой буфер на eventsPerUser событий
+// в примитивных массивах, новые события вытесняют самые старые. Чтение ленты сливает буферы друзей
+// и зависит от числа друзей и размера страницы, но не от общего числа событий.
+@Component
+@Qualifier("inMemoryFeedStorage")
+public class InMemoryFeedStorage implements FeedStorage {
+    private static final Event.EventType[] EVENT_TYPES = Event.EventType.values();
+    private static final Event.Operation[] OPERATIONS = Event.Operation.values();
+
+    private final Map<Long, UserEvents> events = new ConcurrentHashMap<>();
+    private final AtomicLong lastEventId = new AtomicLong();
+    private final int eventsPerUser;
+
+    public InMemoryFeedStorage(@Value("${filmorate.feed.events-per-user:100}") int eventsPerUser) {
+        if (eventsPerUser <= 0) {
+            throw new IllegalArgumentException("Размер истории событий должен быть положительным");
+        }
+        this.eventsPerUser = eventsPerUser;
+    }
+
+    @Override
+    public Event addEvent(long userId, Event.EventType eventType, Event.Operation operation, long entityId) {
+        UserEvents userEvents = events.computeIfAbsent(userId, id -> new UserEvents(eventsPerUser));
+        Event event = new Event(0, System.currentTimeMillis(), userId, eventType, operation, entityId);
+        // ID выдаётся под блокировкой буфера, поэтому внутри буфера события упорядочены по ID
+        synchronized (userEvents) {
+            event.setEventId(lastEventId.incrementAndGet());
+            userEvents.append(event.getEventId(), event.getTimestamp(),
+                    (byte) (eventType.ordinal() * OPERATIONS.length + operation.ordinal()), entityId);
+        }
+        return event;
+    }
+
+    @Override
+    public List<Event> getEvents(long[] userIds, long beforeEventId, int limit) {
+        // Из каждого буфера копируется не больше limit подходящих событий, затем слияние по убыванию ID
+        PriorityQueue<Slice> slices = new PriorityQueue<>((first, second) ->
+                Long.compare(second.currentEventId(), first.currentEventId()));
+        for (long userId : userIds) {
+            UserEvents userEvents = events.get(userId);
+            if (userEvents != null) {
+                Slice slice;
+                synchronized (userEvents) {
+                    slice = userEvents.recent(userId, beforeEventId, limit);
+                }
+                if (slice.size > 0) {
+                    slices.add(slice);
+                }
+            }
+        }
+        List<Event> result = new ArrayList<>(limit);
+        while (result.size() < limit && !slices.isEmpty()) {
+            Slice slice = slices.poll();
+            result.add(slice.toEvent());
+            if (++slice.position < slice.size) {
+                slices.add(slice);
+            }
+        }
+        return result;
+    }
+
+    // Кольцевой буфер событий одного пользователя; доступ синхронизируется по самому буферу
+    private static final class UserEvents {
+        private final long[] eventIds;
+        private final long[] timestamps;
+        private final long[] entityIds;
+        private final byte[] kinds;
+        private int next;
+        private int count;
+
+        UserEvents(int capacity) {
+            eventIds = new long[capacity];
+            timestamps = new long[capacity];
+            entityIds = new long[capacity];
+            kinds = new byte[capacity];
+        }
+
+        void append(long eventId, long timestamp, byte kind, long entityId) {
+            eventIds[next] = eventId;
+            timestamps[next] = timestamp;
+            entityIds[next] = entityId;
+            kinds[next] = kind;
+            next = (next + 1) % eventIds.length;
+            count = Math.min(count + 1, eventIds.length);
+        }
+
+        // Копирует до limit самых новых событий с ID меньше before, от новых к старым
+        Slice recent(long userId, long before, int limit) {
+            Slice slice = new Slice(userId, Math.min(limit, count));
+            for (int i = 0, index = next; i < count && slice.size < slice.eventIds.length; i++) {
+                index = (index - 1 + eventIds.length) % eventIds.length;
+                if (eventIds[index] < before) {
+                    slice.eventIds[slice.size] = eventIds[index];
+                    slice.timestamps[slice.size] = timestamps[index];
+                    slice.entityIds[slice.size] = entityIds[index];
+                    slice.kinds[slice.size] = kinds[index];
+                    slice.size++;
+                }
+            }
+            return slice;
+        }
+    }
+
+    // Копия части буфера, прочитанная под блокировкой; при слиянии сдвигается position
+    private static final class Slice {
+        private final long userId;
+        private final long[] eventIds;
+        private final long[] timestamps;
+        private final long[] entityIds;
+        private final byte[] kinds;
+        private int size;
+        private int position;
+
+        Slice(long userId, int capacity) {
+            this.userId = userId;
+            eventIds = new long[capacity];
+            timestamps = new long[capacity];
+            entityIds = new long[capacity];
+            kinds = new byte[capacity];
+        }
+
+        long currentEventId() {
+            return eventIds[position];
+        }
+
+        Event toEvent() {
+            int kind = kinds[position];
+            return new Event(eventIds[position], timestamps[position], userId,
+                    EVENT_TYPES[kind / OPERATIONS.length], OPERATIONS[kind % OPERATIONS.length], entityIds[position]);
+        }
+    }
+}
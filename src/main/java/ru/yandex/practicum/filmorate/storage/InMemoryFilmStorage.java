@@ -2,42 +2,203 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Потокобезопасное хранилище: фильмы лежат в неблокирующей упорядоченной карте,
+// лайки - в конкурентных множествах, наружу отдаются только копии.
 @Component
 @Qualifier("inMemoryFilmStorage")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
-    private long currentId = 0;
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong currentId = new AtomicLong();
 
     @Override
     public Film addFilm(Film film) {
-        film.setId(++currentId);
-        films.put(film.getId(), film);
+        film.setId(currentId.incrementAndGet());
+        Film stored = copyOf(film);
+        Set<Long> likes = ConcurrentHashMap.newKeySet();
+        likes.addAll(stored.getLikes());
+        stored.setLikes(likes);
+        versions.put(stored.getId(), new AtomicLong());
+        films.put(stored.getId(), stored);
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> newFilms) {
+        newFilms.forEach(this::addFilm);
+        return newFilms;
+    }
+
     @Override
     public Film updateFilm(Film film) {
-        films.put(film.getId(), film);
+        // Лайки меняются только через addLike/removeLike, поэтому множество переносится из прежней версии
+        Film updated = films.computeIfPresent(film.getId(), (id, old) -> {
+            Film stored = copyOf(film);
+            stored.setLikes(old.getLikes());
+            return stored;
+        });
+        if (updated == null) {
+            throw new ResourceNotFoundException("Фильм с id " + film.getId() + " не найден");
+        }
+        incrementVersion(film.getId());
         return film;
     }
 
     @Override
     public Optional<Film> getFilmById(Long id) {
-        return Optional.ofNullable(films.get(id));
+        return Optional.ofNullable(films.get(id)).map(InMemoryFilmStorage::copyOf);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(InMemoryFilmStorage::copyOf)
+                .toList();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public Optional<Long> getFilmVersion(Long id) {
+        return Optional.ofNullable(versions.get(id)).map(AtomicLong::get);
     }
 
     @Override
     public void deleteFilm(Long id) {
         films.remove(id);
+        versions.remove(id);
     }
 
     @Override
     public List<Film> getAllFilms() {
-        return new ArrayList<>(films.values());
+        return films.values().stream()
+                .map(InMemoryFilmStorage::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryFilmStorage::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Film> getMostPopularFilms(int count, Long genreId, Long mpaId, Integer year) {
+        return films.values().stream()
+                .filter(film -> genreId == null || film.getGenres() != null && film.getGenres().stream()
+                        .anyMatch(genre -> genreId.equals(genre.getId())))
+                .filter(film -> mpaId == null || film.getMpa() != null && mpaId.equals(film.getMpa().getId()))
+                .filter(film -> year == null || film.getReleaseDate() != null
+                        && film.getReleaseDate().getYear() == year)
+                // Лайки меняются во время сортировки: число лайков фиксируется до неё, иначе
+                // сравнения противоречат друг другу и TimSort может бросить исключение
+                .map(film -> new RankedFilm(film, film.getLikes().size()))
+                .sorted(Comparator.comparingInt(RankedFilm::likes).reversed()
+                        .thenComparing(ranked -> ranked.film().getId()))
+                .limit(count)
+                .map(ranked -> copyOf(ranked.film()))
+                .toList();
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        Film film = films.get(filmId);
+        boolean added = film != null && film.getLikes().add(userId);
+        if (added) {
+            incrementVersion(filmId);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        Film film = films.get(filmId);
+        boolean removed = film != null && film.getLikes().remove(userId);
+        if (removed) {
+            incrementVersion(filmId);
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        films.forEach((filmId, film) -> film.getLikes().forEach(userId -> consumer.accept(filmId, userId)));
+    }
+
+    @Override
+    public void forEachFilmSummary(FilmSummaryConsumer consumer) {
+        films.forEach((filmId, film) ->
+                consumer.accept(filmId, film.getName(), film.getDescription(), film.getLikes().size()));
+    }
+
+    // Для снимков (InMemorySnapshotStorage): хранимые фильмы без копирования, только для чтения.
+    // Обход не блокирует запись; фильм, изменённый во время обхода, попадает в снимок в одном из состояний
+    Collection<Film> storedFilms() {
+        return films.values();
+    }
+
+    long storedVersion(long filmId) {
+        AtomicLong version = versions.get(filmId);
+        return version == null ? 0 : version.get();
+    }
+
+    long lastId() {
+        return currentId.get();
     }
-}
 
+    void clear() {
+        films.clear();
+        versions.clear();
+        currentId.set(0);
+    }
+
+    // Кладёт фильм из снимка с его ID и версией; множество лайков должно быть конкурентным
+    void restoreFilm(Film film, long version) {
+        versions.put(film.getId(), new AtomicLong(version));
+        films.put(film.getId(), film);
+    }
+
+    void restoreLastId(long lastId) {
+        currentId.accumulateAndGet(lastId, Math::max);
+    }
+
+    private void incrementVersion(Long filmId) {
+        AtomicLong version = versions.get(filmId);
+        if (version != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setLikes(film.getLikes() == null ? new HashSet<>() : new HashSet<>(film.getLikes()));
+        copy.setGenres(film.getGenres() == null ? new LinkedHashSet<>() : new LinkedHashSet<>(film.getGenres()));
+        return copy;
+    }
+
+    // Фильм с числом лайков на момент выборки популярных
+    private record RankedFilm(Film film, int likes) {
+    }
+}
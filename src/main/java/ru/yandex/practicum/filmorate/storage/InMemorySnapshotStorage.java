@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Двоичный снимок хранилищ в памяти: фильмы с лайками и пользователи с друзьями.
+// Формат: заголовок (MAGIC, FORMAT_VERSION), записи фильмов и пользователей, каждая последовательность
+// завершается нулевым ID, затем последние выданные ID и MAGIC в конце. Числа - big-endian,
+// строки - UTF-8 с длиной впереди. Снимок пишется во временный файл и атомарно заменяет прежний,
+// поэтому файл по указанному пути всегда либо прежний, либо новый целиком.
+@Component
+public class InMemorySnapshotStorage {
+    static final int MAGIC = 0x464C4D53;
+    static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    // Даты хранятся номером дня от эпохи, NO_DATE - дата не задана
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final int chunkSize;
+    // Снимки пишутся по одному: по расписанию и при остановке они могут совпасть по времени
+    private final Lock lock = new ReentrantLock();
+
+    @Autowired
+    public InMemorySnapshotStorage(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage) {
+        this(filmStorage, userStorage, DEFAULT_CHUNK_SIZE);
+    }
+
+    public InMemorySnapshotStorage(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер окна отображения должен быть положительным");
+        }
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.chunkSize = chunkSize;
+    }
+
+    // Записывает снимок, не останавливая запись в хранилища: каждая запись попадает в снимок
+    // в согласованном виде, но изменения, сделанные во время обхода, могут попасть или не попасть
+    public Summary save(Path path) throws IOException {
+        lock.lock();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            long films = 0;
+            long users = 0;
+            try (MappedFileOutput out = new MappedFileOutput(temporary, chunkSize)) {
+                out.putInt(MAGIC);
+                out.putInt(FORMAT_VERSION);
+                for (Film film : filmStorage.storedFilms()) {
+                    writeFilm(out, film, filmStorage.storedVersion(film.getId()));
+                    films++;
+                }
+                out.putLong(0);
+                for (User user : userStorage.storedUsers()) {
+                    writeUser(out, user, userStorage.storedVersion(user.getId()));
+                    users++;
+                }
+                out.putLong(0);
+                // Счётчики читаются после обхода, поэтому не меньше ID любой записи снимка
+                out.putLong(filmStorage.lastId());
+                out.putLong(userStorage.lastId());
+                out.putInt(MAGIC);
+                out.finish();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Summary(films, users);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Заменяет содержимое хранилищ снимком. Если снимок повреждён, хранилища остаются пустыми
+    public Summary restore(Path path) throws IOException {
+        lock.lock();
+        try {
+            filmStorage.clear();
+            userStorage.clear();
+            try (MappedFileInput in = new MappedFileInput(path, chunkSize)) {
+                if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                    throw new IOException("Файл " + path + " не является снимком версии " + FORMAT_VERSION);
+                }
+                long films = 0;
+                for (long id = in.getLong(); id != 0; id = in.getLong()) {
+                    long version = in.getLong();
+                    filmStorage.restoreFilm(readFilm(in, id), version);
+                    films++;
+                }
+                long users = 0;
+                for (long id = in.getLong(); id != 0; id = in.getLong()) {
+                    long version = in.getLong();
+                    userStorage.restoreUser(readUser(in, id), version);
+                    users++;
+                }
+                filmStorage.restoreLastId(in.getLong());
+                userStorage.restoreLastId(in.getLong());
+                if (in.getInt() != MAGIC) {
+                    throw new IOException("Снимок " + path + " не завершён");
+                }
+                return new Summary(films, users);
+            } catch (IOException | RuntimeException e) {
+                filmStorage.clear();
+                userStorage.clear();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeFilm(MappedFileOutput out, Film film, long version) throws IOException {
+        // Множество лайков конкурентное: сначала копия, чтобы число элементов совпало с записанными
+        long[] likes = toArray(film.getLikes());
+        out.putLong(film.getId());
+        out.putLong(version);
+        out.putString(film.getName());
+        out.putString(film.getDescription());
+        out.putLong(film.getReleaseDate() == null ? NO_DATE : film.getReleaseDate().toEpochDay());
+        out.putInt(film.getDuration());
+        MpaRating mpa = film.getMpa();
+        out.putLong(mpa == null || mpa.getId() == null ? 0 : mpa.getId());
+        if (mpa != null && mpa.getId() != null) {
+            out.putString(mpa.getName());
+        }
+        Set<Genre> genres = film.getGenres() == null ? Set.of() : film.getGenres();
+        out.putInt(genres.size());
+        for (Genre genre : genres) {
+            out.putLong(genre.getId());
+            out.putString(genre.getName());
+        }
+        putIds(out, likes);
+    }
+
+    private static Film readFilm(MappedFileInput in, long id) throws IOException {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(in.getString());
+        film.setDescription(in.getString());
+        long releaseDate = in.getLong();
+        film.setReleaseDate(releaseDate == NO_DATE ? null : LocalDate.ofEpochDay(releaseDate));
+        film.setDuration(in.getInt());
+        long mpaId = in.getLong();
+        if (mpaId != 0) {
+            MpaRating mpa = new MpaRating();
+            mpa.setId(mpaId);
+            mpa.setName(in.getString());
+            film.setMpa(mpa);
+        }
+        int genreCount = in.getInt();
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int i = 0; i < genreCount; i++) {
+            Genre genre = new Genre();
+            genre.setId(in.getLong());
+            genre.setName(in.getString());
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        film.setLikes(getIds(in));
+        return film;
+    }
+
+    private static void writeUser(MappedFileOutput out, User user, long version) throws IOException {
+        long[] friends = toArray(user.getFriends());
+        out.putLong(user.getId());
+        out.putLong(version);
+        out.putString(user.getEmail());
+        out.putString(user.getLogin());
+        out.putString(user.getName());
+        out.putLong(user.getBirthday() == null ? NO_DATE : user.getBirthday().toEpochDay());
+        putIds(out, friends);
+    }
+
+    private static User readUser(MappedFileInput in, long id) throws IOException {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(in.getString());
+        user.setLogin(in.getString());
+        user.setName(in.getString());
+        long birthday = in.getLong();
+        user.setBirthday(birthday == NO_DATE ? null : LocalDate.ofEpochDay(birthday));
+        user.setFriends(getIds(in));
+        return user;
+    }
+
+    private static long[] toArray(Set<Long> ids) {
+        return ids == null ? new long[0] : ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static void putIds(MappedFileOutput out, long[] ids) throws IOException {
+        out.putInt(ids.length);
+        out.putLongs(ids);
+    }
+
+    // Сразу конкурентное множество нужного размера: хранилище кладёт его как есть, без копирования
+    private static Set<Long> getIds(MappedFileInput in) throws IOException {
+        int count = in.getInt();
+        if (count < 0) {
+            throw new IOException("Отрицательное число ID в снимке");
+        }
+        Set<Long> ids = ConcurrentHashMap.newKeySet(count);
+        for (long id : in.getLongs(count)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    // Число фильмов и пользователей в записанном или восстановленном снимке
+    public record Summary(long films, long users) {
+    }
+}
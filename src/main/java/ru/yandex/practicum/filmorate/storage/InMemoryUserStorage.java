@@ -6,46 +6,225 @@ import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Потокобезопасное хранилище: пользователи лежат в неблокирующей упорядоченной карте,
+// друзья - в конкурентных множествах, наружу отдаются только копии.
 @Component
 @Qualifier("inMemoryUserStorage")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
-    private int currentId = 0;
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong currentId = new AtomicLong();
 
     @Override
     public User addUser(User user) {
-        user.setId(++currentId);
-        users.put(user.getId(), user);
+        user.setId(currentId.incrementAndGet());
+        User stored = copyOf(user, true);
+        Set<Long> friends = ConcurrentHashMap.newKeySet();
+        friends.addAll(stored.getFriends());
+        stored.setFriends(friends);
+        versions.put(stored.getId(), new AtomicLong());
+        users.put(stored.getId(), stored);
         return user;
     }
 
+    @Override
+    public List<User> addUsers(List<User> newUsers) {
+        newUsers.forEach(this::addUser);
+        return newUsers;
+    }
+
     @Override
     public User updateUser(User user) {
-        if (!users.containsKey(user.getId())) {
+        // Друзья меняются только через addFriend/removeFriend, поэтому множество переносится из прежней версии
+        User updated = users.computeIfPresent(user.getId(), (id, old) -> {
+            User stored = copyOf(user, false);
+            stored.setFriends(old.getFriends());
+            return stored;
+        });
+        if (updated == null) {
             throw new ResourceNotFoundException("Пользователь не найден");
         }
-        users.put(user.getId(), user);
+        incrementVersion(user.getId());
         return user;
     }
 
     @Override
     public Optional<User> getUserById(Long id) {
-        if (!users.containsKey(id)) {
-            throw new ResourceNotFoundException("Пользователь c id " + id + " не найден");
-        }
-        return Optional.ofNullable(users.get(id));
+        return Optional.ofNullable(users.get(id)).map(user -> copyOf(user, true));
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Long> ids, boolean includeFriendIds) {
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(user -> copyOf(user, includeFriendIds))
+                .toList();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public Optional<Long> getUserVersion(Long id) {
+        return Optional.ofNullable(versions.get(id)).map(AtomicLong::get);
     }
 
     @Override
     public void deleteUser(Long id) {
         users.remove(id);
+        versions.remove(id);
+        // Как каскадное удаление в таблице friendship: пользователь пропадает из чужих списков друзей
+        users.forEach((userId, user) -> {
+            if (user.getFriends().remove(id)) {
+                incrementVersion(userId);
+            }
+        });
     }
 
     @Override
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        return users.values().stream()
+                .map(user -> copyOf(user, true))
+                .toList();
+    }
+
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(user -> copyOf(user, true))
+                .toList();
     }
-}
 
+    @Override
+    public List<User> getFriends(Long userId, boolean includeFriendIds) {
+        User user = users.get(userId);
+        if (user == null) {
+            return List.of();
+        }
+        return user.getFriends().stream()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(friend -> copyOf(friend, includeFriendIds))
+                .toList();
+    }
 
+    @Override
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        User user = users.get(userId);
+        User other = users.get(otherId);
+        if (user == null || other == null) {
+            return List.of();
+        }
+        // Слияние двух отсортированных массивов ID без промежуточных множеств
+        long[] first = sortedIds(user.getFriends());
+        long[] second = sortedIds(other.getFriends());
+        List<User> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                User friend = users.get(first[i]);
+                if (friend != null) {
+                    common.add(copyOf(friend, true));
+                }
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        User user = users.get(userId);
+        boolean added = user != null && user.getFriends().add(friendId);
+        if (added) {
+            incrementVersion(userId);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeFriend(Long userId, Long friendId) {
+        User user = users.get(userId);
+        boolean removed = user != null && user.getFriends().remove(friendId);
+        if (removed) {
+            incrementVersion(userId);
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEachFriendship(FriendshipConsumer consumer) {
+        users.forEach((userId, user) -> user.getFriends().forEach(friendId -> consumer.accept(userId, friendId)));
+    }
+
+    // Для снимков (InMemorySnapshotStorage): хранимые пользователи без копирования, только для чтения.
+    // Обход не блокирует запись; пользователь, изменённый во время обхода, попадает в снимок в одном из состояний
+    Collection<User> storedUsers() {
+        return users.values();
+    }
+
+    long storedVersion(long userId) {
+        AtomicLong version = versions.get(userId);
+        return version == null ? 0 : version.get();
+    }
+
+    long lastId() {
+        return currentId.get();
+    }
+
+    void clear() {
+        users.clear();
+        versions.clear();
+        currentId.set(0);
+    }
+
+    // Кладёт пользователя из снимка с его ID и версией; множество друзей должно быть конкурентным
+    void restoreUser(User user, long version) {
+        versions.put(user.getId(), new AtomicLong(version));
+        users.put(user.getId(), user);
+    }
+
+    void restoreLastId(long lastId) {
+        currentId.accumulateAndGet(lastId, Math::max);
+    }
+
+    private void incrementVersion(Long userId) {
+        AtomicLong version = versions.get(userId);
+        if (version != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    private static long[] sortedIds(Set<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static User copyOf(User user, boolean includeFriendIds) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        if (includeFriendIds && user.getFriends() != null) {
+            copy.setFriends(new HashSet<>(user.getFriends()));
+        }
+        return copy;
+    }
+}
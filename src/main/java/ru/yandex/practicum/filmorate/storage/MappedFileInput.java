@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Последовательное чтение файла, записанного MappedFileOutput, окнами по chunkSize байт.
+// Окно сдвигается к текущей позиции, поэтому значение на границе окон читается целиком
+final class MappedFileInput implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedFileInput(Path path, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(chunkSize, size));
+    }
+
+    int getInt() throws IOException {
+        ensure(Integer.BYTES);
+        return window.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(Long.BYTES);
+        return window.getLong();
+    }
+
+    long[] getLongs(int count) throws IOException {
+        int bytes = Math.multiplyExact(count, Long.BYTES);
+        ensure(bytes);
+        long[] values = new long[count];
+        window.asLongBuffer().get(values);
+        window.position(window.position() + bytes);
+        return values;
+    }
+
+    String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) {
+            return null;
+        }
+        ensure(length);
+        byte[] bytes = new byte[length];
+        window.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            long position = windowStart + window.position();
+            if (position + bytes > size) {
+                throw new EOFException("Файл обрывается на позиции " + position);
+            }
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(Math.max(chunkSize, bytes), size - position));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Последовательная запись в файл через отображение в память окнами по chunkSize байт:
+// значения кладутся прямо в страничный кеш без промежуточных буферов и системных вызовов на запись.
+// Когда окно заканчивается, оно сбрасывается на диск и отображается следующее.
+final class MappedFileOutput implements Closeable {
+    private final FileChannel channel;
+    private final int chunkSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedFileOutput(Path path, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.chunkSize = chunkSize;
+        this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, chunkSize);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        window.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        window.putLong(value);
+    }
+
+    // Массив целиком одним копированием через LongBuffer-представление окна
+    void putLongs(long[] values) throws IOException {
+        int bytes = Math.multiplyExact(values.length, Long.BYTES);
+        ensure(bytes);
+        window.asLongBuffer().put(values);
+        window.position(window.position() + bytes);
+    }
+
+    // Строка в UTF-8 с длиной впереди; null записывается длиной -1
+    void putString(String value) throws IOException {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        window.put(bytes);
+    }
+
+    // Сбрасывает записанное на диск и обрезает файл до фактического размера
+    void finish() throws IOException {
+        window.force();
+        channel.truncate(windowStart + window.position());
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            long position = windowStart + window.position();
+            window.force();
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(chunkSize, bytes));
+        }
+    }
+}
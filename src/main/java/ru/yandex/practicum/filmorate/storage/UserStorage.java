@@ -8,11 +8,36 @@ import java.util.Optional;
 public interface UserStorage {
     User addUser(User user);               // Добавить нового пользователя
 
+    List<User> addUsers(List<User> users); // Добавить пачку пользователей одной пакетной операцией
+
     User updateUser(User user);            // Обновить данные пользователя
 
     Optional<User> getUserById(Long id);   // Получить пользователя по его ID
 
+    List<User> getUsersByIds(List<Long> ids, boolean includeFriendIds); // Получить пользователей в порядке ID
+
+    boolean existsById(Long id);           // Проверить существование пользователя без загрузки друзей
+
+    Optional<Long> getUserVersion(Long id); // Получить версию пользователя, меняющуюся при каждом изменении
+
     void deleteUser(Long id);              // Удалить пользователя по ID
 
     List<User> getAllUsers();              // Получить всех пользователей
+
+    List<User> getUsersPage(long afterId, int limit); // Получить до limit пользователей с ID больше afterId
+
+    List<User> getFriends(Long userId, boolean includeFriendIds); // Получить друзей пользователя
+
+    List<User> getCommonFriends(Long userId, Long otherId); // Получить общих друзей двух пользователей
+
+    boolean addFriend(Long userId, Long friendId);    // Добавить друга; false, если он уже был в друзьях
+
+    boolean removeFriend(Long userId, Long friendId); // Удалить друга; false, если его не было в друзьях
+
+    void forEachFriendship(FriendshipConsumer consumer); // Передать потребителю все связи дружбы
+
+    @FunctionalInterface
+    interface FriendshipConsumer {
+        void accept(long userId, long friendId);
+    }
 }
@@ -3,113 +3,365 @@ package ru.yandex.practicum.filmorate.storage.db;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
-import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 @Qualifier("filmDbStorage")
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
+    private static final String FILM_SELECT = "SELECT f.film_id, f.name, f.description, f.release_date, " +
+            "f.duration, fmr.mpa_rating_id FROM films f " +
+            "LEFT JOIN film_mpa_rating fmr ON f.film_id = fmr.film_id ";
+    // MERGE вставляет строку только при её отсутствии: повторный лайк не нарушает первичный ключ
+    private static final String INSERT_LIKE_SQL = "MERGE INTO likes l "
+            + "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS v(film_id, user_id) "
+            + "ON l.film_id = v.film_id AND l.user_id = v.user_id "
+            + "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (v.film_id, v.user_id)";
+    static final String DELETE_LIKE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String CHANGE_LIKES_COUNT_SQL =
+            "UPDATE films SET likes_count = likes_count + ?, version = version + ? WHERE film_id = ?";
+
     private final JdbcTemplate jdbcTemplate;
+    // Справочники жанров и MPA кешируются в памяти, названия берутся оттуда без обращения к БД
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final LikeWriteBuffer likeBuffer;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreStorage genreStorage, MpaStorage mpaStorage,
+                         TransactionTemplate transactionTemplate, LikeWriteBuffer likeBuffer) {
         this.jdbcTemplate = jdbcTemplate;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.likeBuffer = likeBuffer;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         String sql = "INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)";
-        String[] generatedColumns = {"film_id"};
-
-        try (Connection connection = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql, generatedColumns)) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
 
-            statement.setString(1, film.getName());
-            statement.setString(2, film.getDescription());
-            statement.setDate(3, Date.valueOf(film.getReleaseDate()));
-            statement.setInt(4, film.getDuration());
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, new String[]{"film_id"});
+            setFilmParameters(statement, film);
+            return statement;
+        }, keyHolder);
 
-            statement.executeUpdate();
-
-            try (ResultSet rs = statement.getGeneratedKeys()) {
-                if (rs.next()) {
-                    film.setId(rs.getLong(1));
-                } else {
-                    throw new SQLException("Не удалось получить сгенерированный идентификатор для фильма");
-                }
-            }
-        } catch (SQLException e) {
-            log.error("Ошибка при добавлении фильма: {}", e.getMessage());
-            throw new RuntimeException("Ошибка при добавлении фильма", e);
+        Number id = keyHolder.getKey();
+        if (id == null) {
+            log.error("Ошибка при добавлении фильма: не получен сгенерированный идентификатор");
+            throw new RuntimeException("Не удалось получить сгенерированный идентификатор для фильма");
         }
+        film.setId(id.longValue());
 
         addMpaToFilm(film);
-        addGenresToFilm(film);
+        insertGenres(film.getId(), genreIds(film));
 
         return film;
     }
 
     @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        String sql = "INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        setFilmParameters(statement, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            log.error("Ошибка при пакетном добавлении фильмов: получено {} ключей для {} фильмов",
+                    keys.size(), films.size());
+            throw new RuntimeException("Не удалось получить сгенерированные идентификаторы для фильмов");
+        }
+
+        List<Object[]> mpaLinks = new ArrayList<>();
+        List<Object[]> genreLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            if (film.getMpa() != null && film.getMpa().getId() != null) {
+                mpaLinks.add(new Object[]{film.getId(), film.getMpa().getId()});
+            }
+            for (Long genreId : genreIds(film)) {
+                genreLinks.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        if (!mpaLinks.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_mpa_rating (film_id, mpa_rating_id) VALUES (?, ?)", mpaLinks);
+        }
+        if (!genreLinks.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", genreLinks);
+        }
+        return films;
+    }
+
+    @Override
+    @Transactional
     public Film updateFilm(Film film) {
-        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ? WHERE film_id = ?";
+        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, "
+                + "version = version + 1 WHERE film_id = ?";
         jdbcTemplate.update(sql,
                 film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getId());
 
-        deleteMpaFromFilm(film.getId());
-        addMpaToFilm(film);
+        // Текущие связи читаются одним запросом, записывается только разница
+        Set<Long> currentGenres = new LinkedHashSet<>();
+        Set<Long> currentMpa = new LinkedHashSet<>();
+        String linksSql = "SELECT genre_id, NULL AS mpa_rating_id FROM film_genre WHERE film_id = ? " +
+                "UNION ALL SELECT NULL, mpa_rating_id FROM film_mpa_rating WHERE film_id = ?";
+        jdbcTemplate.query(linksSql, rs -> {
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull()) {
+                currentGenres.add(genreId);
+            } else {
+                currentMpa.add(rs.getLong("mpa_rating_id"));
+            }
+        }, film.getId(), film.getId());
+
+        Set<Long> newMpa = film.getMpa() == null || film.getMpa().getId() == null
+                ? Set.of() : Set.of(film.getMpa().getId());
+        if (!currentMpa.equals(newMpa)) {
+            deleteMpaFromFilm(film.getId());
+            addMpaToFilm(film);
+        }
 
-        deleteGenresFromFilm(film.getId());
-        addGenresToFilm(film);
+        Set<Long> newGenres = genreIds(film);
+        Set<Long> genresToDelete = new LinkedHashSet<>(currentGenres);
+        genresToDelete.removeAll(newGenres);
+        Set<Long> genresToInsert = new LinkedHashSet<>(newGenres);
+        genresToInsert.removeAll(currentGenres);
+        deleteGenres(film.getId(), genresToDelete);
+        insertGenres(film.getId(), genresToInsert);
 
         return film;
     }
 
     @Override
     public List<Film> getAllFilms() {
-        String sql = "SELECT * FROM films";
-        return jdbcTemplate.query(sql, this::mapRowToFilm);
+        return findFilms("ORDER BY f.film_id");
+    }
+
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        return findFilms("WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?", afterId, limit);
     }
 
     @Override
     public void deleteFilm(Long id) {
         String sql = "DELETE FROM films WHERE film_id = ?";
         jdbcTemplate.update(sql, id);
+        likeBuffer.discardFilm(id);
     }
 
     @Override
     public Optional<Film> getFilmById(Long id) {
-        String sql = "SELECT * FROM films WHERE film_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToFilm, id).stream().findFirst();
+        return findFilms("WHERE f.film_id = ?", id).stream().findFirst();
     }
 
-    public void addLike(Long filmId, Long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Film> films = new HashMap<>();
+        findFilms("WHERE f.film_id = ANY(?)", (Object) ids.toArray(new Long[0]))
+                .forEach(film -> films.put(film.getId(), film));
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        String sql = "SELECT EXISTS(SELECT 1 FROM films WHERE film_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public Optional<Long> getFilmVersion(Long id) {
+        String sql = "SELECT version FROM films WHERE film_id = ?";
+        if (!likeBuffer.isEnabled()) {
+            return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+        }
+        return Optional.ofNullable(likeBuffer.versionWithPending(id,
+                () -> jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst().orElse(null)));
+    }
+
+    @Override
+    public List<Film> getMostPopularFilms(int count, Long genreId, Long mpaId, Integer year) {
+        PopularityIndex index = PopularityIndex.choose(genreId, mpaId, year);
+        Set<Long> pendingFilmIds = likeBuffer.isEnabled() ? likeBuffer.pendingFilmIds() : Set.of();
+        if (!pendingFilmIds.isEmpty()) {
+            return getMostPopularFilmsWithPending(count, index, genreId, mpaId, year, pendingFilmIds);
+        }
+        if (index == PopularityIndex.ALL) {
+            // Порядок берётся из индекса idx_films_popularity, гидрируются только count фильмов
+            return findFilms("ORDER BY f.likes_count DESC, f.film_id LIMIT ?", count);
+        }
+        return getFilmsByIds(popularFilmIds(index, count, genreId, mpaId, year));
     }
 
-    public void removeLike(Long filmId, Long userId) {
-        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+    // Фильмы с незаписанными лайками могут подняться или опуститься в рейтинге. Остальные фильмы
+    // сохраняют взаимный порядок, поэтому каждый из первых count окажется среди первых
+    // count + pendingFilmIds.size() по likes_count; фильмы с незаписанными лайками догружаются
+    // отдельно, и все кандидаты сортируются по лайкам с учётом очереди
+    private List<Film> getMostPopularFilmsWithPending(int count, PopularityIndex index, Long genreId, Long mpaId,
+                                                      Integer year, Set<Long> pendingFilmIds) {
+        Set<Long> candidates = new LinkedHashSet<>(
+                popularFilmIds(index, count + pendingFilmIds.size(), genreId, mpaId, year));
+        pendingFilmIds.removeAll(candidates);
+        if (!pendingFilmIds.isEmpty()) {
+            if (index == PopularityIndex.ALL) {
+                candidates.addAll(pendingFilmIds);
+            } else {
+                // Фильтры проверяются по таблице films, где год - собственная колонка
+                List<Object> args = new ArrayList<>();
+                List<String> filters = PopularityIndex.YEAR.filters(genreId, mpaId, year, args);
+                args.add(0, pendingFilmIds.toArray(new Long[0]));
+                candidates.addAll(jdbcTemplate.queryForList("SELECT p.film_id FROM films p WHERE p.film_id = ANY(?) AND "
+                        + String.join(" AND ", filters), Long.class, args.toArray()));
+            }
+        }
+        List<Film> films = new ArrayList<>(getFilmsByIds(new ArrayList<>(candidates)));
+        films.sort(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+                .thenComparing(Film::getId));
+        return new ArrayList<>(films.subList(0, Math.min(count, films.size())));
+    }
+
+    // ID первых limit фильмов по лайкам, прочитанные по порядку из индекса выбранного фильтра
+    private List<Long> popularFilmIds(PopularityIndex index, int limit, Long genreId, Long mpaId, Integer year) {
+        List<Object> args = new ArrayList<>();
+        List<String> filters = index.filters(genreId, mpaId, year, args);
+        args.add(limit);
+        String where = filters.isEmpty() ? "" : "WHERE " + String.join(" AND ", filters) + " ";
+        String order = index.column == null ? "" : "p." + index.column + ", ";
+        return jdbcTemplate.queryForList("SELECT p.film_id FROM " + index.table + " p " + where
+                + "ORDER BY " + order + "p.likes_count DESC, p.film_id LIMIT ?", Long.class, args.toArray());
+    }
+
+    // Счётчики лайков фильмов и их связей с жанрами и рейтингами меняются вместе.
+    // Строка изменения: {изменение счётчика, изменение версии, ID фильма}
+    static void changeLikesCounts(JdbcTemplate jdbcTemplate, List<Object[]> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(CHANGE_LIKES_COUNT_SQL, changes);
+        List<Object[]> links = changes.stream()
+                .filter(change -> ((Number) change[0]).intValue() != 0)
+                .map(change -> new Object[]{change[0], change[2]})
+                .toList();
+        if (!links.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE film_genre SET likes_count = likes_count + ? WHERE film_id = ?", links);
+            jdbcTemplate.batchUpdate("UPDATE film_mpa_rating SET likes_count = likes_count + ? WHERE film_id = ?",
+                    links);
+        }
+    }
+
+    // При отложенной записи лайк попадает в очередь LikeWriteBuffer, транзакция и соединение
+    // на время ожидания очереди не занимаются
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        if (likeBuffer.isEnabled()) {
+            return likeBuffer.addLike(filmId, userId);
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            boolean added = jdbcTemplate.update(INSERT_LIKE_SQL, filmId, userId) > 0;
+            if (added) {
+                changeLikesCount(filmId, 1);
+            }
+            return added;
+        }));
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        if (likeBuffer.isEnabled()) {
+            return likeBuffer.removeLike(filmId, userId);
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            boolean removed = jdbcTemplate.update(DELETE_LIKE_SQL, filmId, userId) > 0;
+            if (removed) {
+                changeLikesCount(filmId, -1);
+            }
+            return removed;
+        }));
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        // Полное чтение видит и отложенные лайки
+        likeBuffer.flush();
+        // Строки передаются потребителю по мере чтения, весь набор лайков в памяти не собирается
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes", rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("user_id"));
+        });
+    }
+
+    @Override
+    public void forEachFilmSummary(FilmSummaryConsumer consumer) {
+        // Число лайков берётся из likes_count, поэтому отложенные лайки сначала записываются
+        likeBuffer.flush();
+        jdbcTemplate.query("SELECT film_id, name, description, likes_count FROM films", rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getString("name"), rs.getString("description"),
+                    rs.getInt("likes_count"));
+        });
+    }
+
+    private void changeLikesCount(Long filmId, int delta) {
+        changeLikesCounts(jdbcTemplate, List.<Object[]>of(new Object[]{delta, 1, filmId}));
     }
 
     private void addMpaToFilm(Film film) {
-        if (film.getMpa() != null) {
-            String sql = "INSERT INTO film_mpa_rating (film_id, mpa_rating_id) VALUES (?, ?)";
-            jdbcTemplate.update(sql, film.getId(), film.getMpa().getId());
+        if (film.getMpa() != null && film.getMpa().getId() != null) {
+            // Счётчик лайков связи копируется из фильма: рейтинг мог смениться у фильма с лайками
+            String sql = "INSERT INTO film_mpa_rating (film_id, mpa_rating_id, likes_count) "
+                    + "SELECT film_id, ?, likes_count FROM films WHERE film_id = ?";
+            jdbcTemplate.update(sql, film.getMpa().getId(), film.getId());
         }
     }
 
@@ -118,55 +370,159 @@ public class FilmDbStorage implements FilmStorage {
         jdbcTemplate.update(sql, filmId);
     }
 
-    private void addGenresToFilm(Film film) {
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+    private static void setFilmParameters(PreparedStatement statement, Film film) throws SQLException {
+        statement.setString(1, film.getName());
+        statement.setString(2, film.getDescription());
+        statement.setDate(3, Date.valueOf(film.getReleaseDate()));
+        statement.setInt(4, film.getDuration());
+    }
+
+    private Set<Long> genreIds(Film film) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (film.getGenres() != null) {
             for (Genre genre : film.getGenres()) {
-                jdbcTemplate.update(sql, film.getId(), genre.getId());
+                ids.add(genre.getId());
             }
         }
+        return ids;
     }
 
-    private void deleteGenresFromFilm(Long filmId) {
-        String sql = "DELETE FROM film_genre WHERE film_id = ?";
-        jdbcTemplate.update(sql, filmId);
+    private void insertGenres(Long filmId, Set<Long> genreIds) {
+        if (!genreIds.isEmpty()) {
+            String sql = "INSERT INTO film_genre (film_id, genre_id, likes_count) "
+                    + "SELECT film_id, ?, likes_count FROM films WHERE film_id = ?";
+            jdbcTemplate.batchUpdate(sql, genreIds.stream()
+                    .map(genreId -> new Object[]{genreId, filmId})
+                    .toList());
+        }
+    }
+
+    private void deleteGenres(Long filmId, Set<Long> genreIds) {
+        if (!genreIds.isEmpty()) {
+            String sql = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+            jdbcTemplate.batchUpdate(sql, genreIds.stream()
+                    .map(genreId -> new Object[]{filmId, genreId})
+                    .toList());
+        }
+    }
+
+    // Загружает фильмы вместе с MPA одним запросом, затем жанры и лайки всех найденных фильмов
+    // двумя пакетными запросами. Количество запросов не зависит от числа фильмов.
+    private List<Film> findFilms(String condition, Object... args) {
+        Map<Long, Film> films = new LinkedHashMap<>();
+        jdbcTemplate.query(FILM_SELECT + condition, rs -> {
+            Film film = mapRowToFilm(rs);
+            films.putIfAbsent(film.getId(), film);
+        }, args);
+
+        if (!films.isEmpty()) {
+            Long[] ids = films.keySet().toArray(new Long[0]);
+            loadGenres(films, ids);
+            if (likeBuffer.isEnabled()) {
+                // Снимок очереди берётся до чтения таблицы: так запись пакета между ними не теряет лайки
+                Map<Long, Map<Long, Boolean>> pendingLikes = likeBuffer.snapshot(films.keySet());
+                loadLikes(films, ids);
+                LikeWriteBuffer.apply(pendingLikes, films.values());
+            } else {
+                loadLikes(films, ids);
+            }
+        }
+        return new ArrayList<>(films.values());
     }
 
-    private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
-        // Создаём объект Film
+    private void loadGenres(Map<Long, Film> films, Long[] ids) {
+        String sql = "SELECT film_id, genre_id FROM film_genre WHERE film_id = ANY(?) ORDER BY film_id, genre_id";
+        jdbcTemplate.query(sql, rs -> {
+            films.get(rs.getLong("film_id")).getGenres().add(resolveGenre(rs.getLong("genre_id")));
+        }, (Object) ids);
+    }
+
+    private void loadLikes(Map<Long, Film> films, Long[] ids) {
+        String sql = "SELECT film_id, user_id FROM likes WHERE film_id = ANY(?)";
+        jdbcTemplate.query(sql, rs -> {
+            films.get(rs.getLong("film_id")).getLikes().add(rs.getLong("user_id"));
+        }, (Object) ids);
+    }
+
+    private Film mapRowToFilm(ResultSet rs) throws SQLException {
         Film film = new Film();
         film.setId(rs.getLong("film_id"));
         film.setName(rs.getString("name"));
         film.setDescription(rs.getString("description"));
         film.setReleaseDate(rs.getDate("release_date").toLocalDate());
         film.setDuration(rs.getInt("duration"));
+        film.setGenres(new LinkedHashSet<>());
 
-        // Получаем лайки
-        String likesSql = "SELECT user_id FROM likes WHERE film_id = ?";
-        List<Long> likes = jdbcTemplate.queryForList(likesSql, Long.class, film.getId());
-        film.setLikes(new HashSet<>(likes));
+        long mpaId = rs.getLong("mpa_rating_id");
+        if (!rs.wasNull()) {
+            film.setMpa(resolveMpa(mpaId));
+        }
+        return film;
+    }
 
-        // Получаем MPA
-        String mpaSql = "SELECT m.mpa_rating_id, m.name FROM mpa_rating m " +
-                "JOIN film_mpa_rating fmr ON m.mpa_rating_id = fmr.mpa_rating_id WHERE fmr.film_id = ?";
-        jdbcTemplate.query(mpaSql, (rsMpa) -> {
-            MpaRating mpaRating = new MpaRating();
-            mpaRating.setId(rsMpa.getLong("mpa_rating_id"));
-            mpaRating.setName(rsMpa.getString("name"));
-            film.setMpa(mpaRating);
-        }, film.getId());
-
-        // Получаем жанры
-        String genresSql = "SELECT g.genre_id, g.name FROM genre g " +
-                "JOIN film_genre fg ON g.genre_id = fg.genre_id WHERE fg.film_id = ?";
-        List<Genre> genres = jdbcTemplate.query(genresSql, (rsGenre, rowNumGenre) -> {
+    private Genre resolveGenre(long genreId) {
+        return genreStorage.getGenreById(genreId).orElseGet(() -> {
             Genre genre = new Genre();
-            genre.setId(rsGenre.getLong("genre_id"));
-            genre.setName(rsGenre.getString("name"));
+            genre.setId(genreId);
             return genre;
-        }, film.getId());
-        film.setGenres(new HashSet<>(genres));
+        });
+    }
 
-        return film;
+    private MpaRating resolveMpa(long mpaId) {
+        return mpaStorage.getMpaById(mpaId).orElseGet(() -> {
+            MpaRating mpaRating = new MpaRating();
+            mpaRating.setId(mpaId);
+            return mpaRating;
+        });
+    }
+
+    // Индекс, из которого читаются популярные фильмы: при нескольких фильтрах выбирается обычно
+    // самый избирательный (год, затем жанр, затем рейтинг), остальные проверяются точечно по film_id.
+    // Просматриваются только фильмы выбранного года, жанра или рейтинга в порядке популярности
+    private enum PopularityIndex {
+        ALL("films", null),
+        YEAR("films", "release_year"),
+        GENRE("film_genre", "genre_id"),
+        MPA("film_mpa_rating", "mpa_rating_id");
+
+        private final String table;
+        private final String column;
+
+        PopularityIndex(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+
+        static PopularityIndex choose(Long genreId, Long mpaId, Integer year) {
+            if (year != null) {
+                return YEAR;
+            }
+            if (genreId != null) {
+                return GENRE;
+            }
+            return mpaId != null ? MPA : ALL;
+        }
+
+        // Условия фильтров для таблицы с псевдонимом p: колонка самой таблицы сравнивается напрямую,
+        // остальные фильтры проверяются по первичным ключам связующих таблиц
+        List<String> filters(Long genreId, Long mpaId, Integer year, List<Object> args) {
+            List<String> filters = new ArrayList<>();
+            if (year != null) {
+                filters.add(this == YEAR ? "p.release_year = ?"
+                        : "EXISTS (SELECT 1 FROM films f WHERE f.film_id = p.film_id AND f.release_year = ?)");
+                args.add(year);
+            }
+            if (genreId != null) {
+                filters.add(this == GENRE ? "p.genre_id = ?"
+                        : "EXISTS (SELECT 1 FROM film_genre fg WHERE fg.film_id = p.film_id AND fg.genre_id = ?)");
+                args.add(genreId);
+            }
+            if (mpaId != null) {
+                filters.add(this == MPA ? "p.mpa_rating_id = ?" : "EXISTS (SELECT 1 FROM film_mpa_rating fmr "
+                        + "WHERE fmr.film_id = p.film_id AND fmr.mpa_rating_id = ?)");
+                args.add(mpaId);
+            }
+            return filters;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.db;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -9,33 +10,49 @@ import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
 @Slf4j
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    // Неизменяемый снимок справочника жанров, заменяется целиком при refresh().
+    // Жанры изменяемы, поэтому наружу отдаются только копии: правка жанра одного фильма не меняет кеш
+    private volatile Map<Long, Genre> genres = Map.of();
 
     @Autowired
     public GenreDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    // Перечитывает справочник из БД. Вызывается при старте и после любого изменения таблицы genre.
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT * FROM genre ORDER BY genre_id";
+        Map<Long, Genre> loaded = new LinkedHashMap<>();
+        for (Genre genre : jdbcTemplate.query(sql, this::mapRowToGenre)) {
+            loaded.put(genre.getId(), genre);
+        }
+        genres = Collections.unmodifiableMap(loaded);
+        log.info("Справочник жанров загружен, записей: {}", loaded.size());
+    }
+
     @Override
     public List<Genre> getAllGenres() {
         log.debug("Запрос на получение всех жанров");
-        String sql = "SELECT * FROM genre";
-        List<Genre> genres = jdbcTemplate.query(sql, this::mapRowToGenre);
-        log.debug("Найдено жанров: {}", genres.size());
-        return genres;
+        List<Genre> allGenres = genres.values().stream().map(GenreDbStorage::copyOf).toList();
+        log.debug("Найдено жанров: {}", allGenres.size());
+        return allGenres;
     }
 
     @Override
     public Optional<Genre> getGenreById(Long id) {
         log.debug("Запрос на получение жанра по ID: {}", id);
-        String sql = "SELECT * FROM genre WHERE genre_id = ?";
-        Optional<Genre> genre = jdbcTemplate.query(sql, this::mapRowToGenre, id).stream().findFirst();
+        Optional<Genre> genre = Optional.ofNullable(genres.get(id)).map(GenreDbStorage::copyOf);
         if (genre.isPresent()) {
             log.debug("Найден жанр: {}", genre.get());
         } else {
@@ -44,6 +61,13 @@ public class GenreDbStorage implements GenreStorage {
         return genre;
     }
 
+    private static Genre copyOf(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+
     private Genre mapRowToGenre(ResultSet rs, int rowNum) throws SQLException {
         Genre genre = new Genre();
         genre.setId(rs.getLong("genre_id"));
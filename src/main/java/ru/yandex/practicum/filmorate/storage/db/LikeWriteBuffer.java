@@ -0,0 +1,279 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Отложенная запись лайков (filmorate.likes.write-behind.enabled). Лайки и их отмены копятся в памяти
+// по паре (фильм, пользователь): повторы и взаимно отменяющие друг друга операции схлопываются,
+// а таблица likes и счётчики likes_count обновляются пакетами раз в flush-interval.
+// Пара хранится, только пока её состояние отличается от таблицы, поэтому таблица читается лишь
+// при первом обращении к паре после записи пакета. При аварийной остановке процесса теряются
+// изменения не старше flush-interval, при штатной остановке пакет записывается.
+@Component
+@Slf4j
+public class LikeWriteBuffer {
+    // Лайк пишется, только если фильм и пользователь ещё существуют: пара, удалённая после постановки
+    // в очередь, пропускается и не откатывает весь пакет нарушением внешнего ключа
+    private static final String INSERT_EXISTING_LIKE_SQL = "INSERT INTO likes (film_id, user_id) "
+            + "SELECT f.film_id, u.user_id FROM films f, users u WHERE f.film_id = ? AND u.user_id = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.film_id = f.film_id AND l.user_id = u.user_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxPending;
+    // Изменения принимаются под блокировкой чтения, пакет пишется под блокировкой записи:
+    // пока он не зафиксирован, изменения остаются видны чтениям из памяти
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final Map<Long, FilmLikes> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    @Autowired
+    public LikeWriteBuffer(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.max-pending:10000}") int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("filmorate.likes.write-behind.max-pending должен быть положительным");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Поставить лайк в очередь; false, если лайк уже есть в таблице или в очереди
+    public boolean addLike(long filmId, long userId) {
+        return change(filmId, userId, true);
+    }
+
+    // Поставить отмену лайка в очередь; false, если лайка нет ни в таблице, ни в очереди
+    public boolean removeLike(long filmId, long userId) {
+        return change(filmId, userId, false);
+    }
+
+    // ID фильмов, у которых есть незаписанные лайки
+    public Set<Long> pendingFilmIds() {
+        return new HashSet<>(pending.keySet());
+    }
+
+    // Копия незаписанных лайков перечисленных фильмов: пользователь -> есть ли лайк.
+    // Снимок берётся до чтения лайков из таблицы; если пакет успеет записаться между ними,
+    // повторное применение тех же изменений ничего не испортит
+    public Map<Long, Map<Long, Boolean>> snapshot(Collection<Long> filmIds) {
+        Map<Long, Map<Long, Boolean>> result = new HashMap<>();
+        if (pending.isEmpty()) {
+            return result;
+        }
+        flushLock.readLock().lock();
+        try {
+            for (Long filmId : filmIds) {
+                FilmLikes film = pending.get(filmId);
+                if (film != null) {
+                    film.lock.lock();
+                    try {
+                        result.put(filmId, new HashMap<>(film.users));
+                    } finally {
+                        film.lock.unlock();
+                    }
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // Накладывает снимок на лайки фильмов, прочитанные из таблицы
+    public static void apply(Map<Long, Map<Long, Boolean>> snapshot, Collection<Film> films) {
+        for (Film film : films) {
+            Map<Long, Boolean> users = snapshot.get(film.getId());
+            if (users != null) {
+                users.forEach((userId, liked) -> {
+                    if (liked) {
+                        film.getLikes().add(userId);
+                    } else {
+                        film.getLikes().remove(userId);
+                    }
+                });
+            }
+        }
+    }
+
+    // Версия фильма с учётом незаписанных изменений: при записи пакета версия в таблице
+    // растёт на то же число, поэтому ETag не повторяется. Таблица читается под блокировкой,
+    // чтобы пакет не записался между чтением версии и подсчётом изменений
+    public Long versionWithPending(long filmId, Supplier<Long> storedVersion) {
+        flushLock.readLock().lock();
+        try {
+            Long version = storedVersion.get();
+            FilmLikes film = pending.get(filmId);
+            if (version == null || film == null) {
+                return version;
+            }
+            film.lock.lock();
+            try {
+                return version + film.changes;
+            } finally {
+                film.lock.unlock();
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Незаписанные лайки удалённого фильма не нужны: строки в таблице удаляются вместе с фильмом
+    public void discardFilm(long filmId) {
+        flushLock.readLock().lock();
+        try {
+            pending.remove(filmId);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Записывает накопленные изменения одной транзакцией. При ошибке очередь сохраняется
+    // и записывается следующим вызовом
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval:PT1S}")
+    public void flush() {
+        if (!enabled || pending.isEmpty()) {
+            return;
+        }
+        flushLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> write());
+            log.debug("Записано изменений лайков: {} у фильмов: {}", pendingChanges.get(), pending.size());
+            pending.clear();
+            pendingChanges.set(0);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать отложенные лайки, повтор при следующей записи", e);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Запись отложенных лайков перед остановкой");
+        flush();
+    }
+
+    private boolean change(long filmId, long userId, boolean liked) {
+        flushLock.readLock().lock();
+        try {
+            while (true) {
+                FilmLikes film = pending.computeIfAbsent(filmId, id -> new FilmLikes());
+                // ReentrantLock вместо synchronized: под блокировкой может идти чтение из таблицы,
+                // а synchronized закрепил бы виртуальный поток за потоком-носителем
+                film.lock.lock();
+                try {
+                    // Пока ждали блокировку, запись могли снять с очереди (удаление фильма) - берём новую
+                    if (pending.get(filmId) != film) {
+                        continue;
+                    }
+                    Boolean queued = film.users.get(userId);
+                    Boolean current = queued != null ? queued : storedLike(filmId, userId);
+                    if (current == null) {
+                        // Фильм или пользователь уже удалены: такая пара не должна попасть в пакет
+                        if (film.users.isEmpty() && film.changes == 0) {
+                            pending.remove(filmId, film);
+                        }
+                        return false;
+                    }
+                    if (current == liked) {
+                        return false;
+                    }
+                    // Изменение, возвращающее пару к состоянию таблицы, просто снимается с очереди
+                    if (queued != null) {
+                        film.users.remove(userId);
+                    } else {
+                        film.users.put(userId, liked);
+                    }
+                    film.changes++;
+                    break;
+                } finally {
+                    film.lock.unlock();
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        // Очередь ограничена: при переполнении пакет пишется сразу, не дожидаясь расписания
+        if (pendingChanges.incrementAndGet() >= maxPending) {
+            flush();
+        }
+        return true;
+    }
+
+    // Есть ли лайк в таблице; null, если фильма или пользователя уже нет
+    private Boolean storedLike(long filmId, long userId) {
+        String sql = "SELECT EXISTS(SELECT 1 FROM films WHERE film_id = ?) "
+                + "AND EXISTS(SELECT 1 FROM users WHERE user_id = ?) AS present, "
+                + "EXISTS(SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?) AS liked";
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> rs.getBoolean("present")
+                ? rs.getBoolean("liked") : null, filmId, userId, filmId, userId);
+    }
+
+    private void write() {
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        List<Long> addedFilms = new ArrayList<>();
+        List<Long> removedFilms = new ArrayList<>();
+        pending.forEach((filmId, film) -> film.users.forEach((userId, liked) -> {
+            (liked ? added : removed).add(new Object[]{filmId, userId});
+            (liked ? addedFilms : removedFilms).add(filmId);
+        }));
+        // Счётчики меняются на число действительно изменённых строк
+        Map<Long, Integer> deltas = new HashMap<>();
+        countChanged(jdbcTemplate.batchUpdate(INSERT_EXISTING_LIKE_SQL, added), addedFilms, 1, deltas);
+        countChanged(jdbcTemplate.batchUpdate(FilmDbStorage.DELETE_LIKE_SQL, removed), removedFilms, -1, deltas);
+        List<Object[]> counters = new ArrayList<>();
+        pending.forEach((filmId, film) -> counters.add(
+                new Object[]{deltas.getOrDefault(filmId, 0), film.changes, filmId}));
+        FilmDbStorage.changeLikesCounts(jdbcTemplate, counters);
+    }
+
+    private static void countChanged(int[] updated, List<Long> filmIds, int sign, Map<Long, Integer> deltas) {
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                deltas.merge(filmIds.get(i), sign, Integer::sum);
+            }
+        }
+    }
+
+    // Незаписанные лайки одного фильма и число изменений с последней записи
+    private static final class FilmLikes {
+        private final Lock lock = new ReentrantLock();
+        private final Map<Long, Boolean> users = new HashMap<>();
+        private int changes;
+    }
+}
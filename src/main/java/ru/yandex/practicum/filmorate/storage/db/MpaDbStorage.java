@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.db;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -9,7 +10,10 @@ import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -18,25 +22,38 @@ import java.util.Optional;
 public class MpaDbStorage implements MpaStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    // Неизменяемый снимок справочника MPA, заменяется целиком при refresh().
+    // Рейтинги изменяемы, поэтому наружу отдаются только копии
+    private volatile Map<Long, MpaRating> mpaRatings = Map.of();
 
     public MpaDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    // Перечитывает справочник из БД. Вызывается при старте и после любого изменения таблицы mpa_rating.
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT * FROM mpa_rating ORDER BY mpa_rating_id";
+        Map<Long, MpaRating> loaded = new LinkedHashMap<>();
+        for (MpaRating mpaRating : jdbcTemplate.query(sql, this::mapRowToMpaRating)) {
+            loaded.put(mpaRating.getId(), mpaRating);
+        }
+        mpaRatings = Collections.unmodifiableMap(loaded);
+        log.info("Справочник MPA загружен, записей: {}", loaded.size());
+    }
+
     @Override
     public List<MpaRating> getAllMpa() {
         log.debug("Запрос на получение всех MPA рейтингов");
-        String sql = "SELECT * FROM mpa_rating";
-        List<MpaRating> mpaRatings = jdbcTemplate.query(sql, this::mapRowToMpaRating);
-        log.debug("Найдено MPA рейтингов: {}", mpaRatings.size());
-        return mpaRatings;
+        List<MpaRating> allMpa = mpaRatings.values().stream().map(MpaDbStorage::copyOf).toList();
+        log.debug("Найдено MPA рейтингов: {}", allMpa.size());
+        return allMpa;
     }
 
     @Override
     public Optional<MpaRating> getMpaById(Long id) {
         log.debug("Запрос на получение MPA рейтинга по ID: {}", id);
-        String sql = "SELECT * FROM mpa_rating WHERE mpa_rating_id = ?";
-        Optional<MpaRating> mpaRating = jdbcTemplate.query(sql, this::mapRowToMpaRating, id).stream().findFirst();
+        Optional<MpaRating> mpaRating = Optional.ofNullable(mpaRatings.get(id)).map(MpaDbStorage::copyOf);
         if (mpaRating.isPresent()) {
             log.debug("Найден MPA рейтинг: {}", mpaRating.get());
         } else {
@@ -45,6 +62,13 @@ public class MpaDbStorage implements MpaStorage {
         return mpaRating;
     }
 
+    private static MpaRating copyOf(MpaRating mpaRating) {
+        MpaRating copy = new MpaRating();
+        copy.setId(mpaRating.getId());
+        copy.setName(mpaRating.getName());
+        return copy;
+    }
+
     private MpaRating mapRowToMpaRating(ResultSet rs, int rowNum) throws SQLException {
         MpaRating mpaRating = new MpaRating();
         mpaRating.setId(rs.getLong("mpa_rating_id"));
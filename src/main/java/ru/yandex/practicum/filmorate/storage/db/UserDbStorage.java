@@ -3,22 +3,33 @@ package ru.yandex.practicum.filmorate.storage.db;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Repository
 @Qualifier("userDbStorage")
 @Slf4j
 public class UserDbStorage implements UserStorage {
+    private static final String USER_SELECT = "SELECT u.user_id, u.email, u.login, u.name, u.birthday FROM users u ";
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -30,22 +41,70 @@ public class UserDbStorage implements UserStorage {
     @Override
     public User addUser(User user) {
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
-        try {
-            jdbcTemplate.update(sql, user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
-            String queryForId = "SELECT user_id FROM users WHERE email = ? AND login = ? AND name = ? AND birthday = ?";
-            Long userId = jdbcTemplate.queryForObject(queryForId, Long.class,
-                    user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
-            user.setId(userId);
-        } catch (Exception e) {
-            log.error("Ошибка при добавлении пользователя в БД: {}", e.getMessage());
-            throw new RuntimeException("Ошибка добавления пользователя", e);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        // Идентификатор берётся из сгенерированного ключа: поиск по всем полям
+        // сканировал таблицу и не находил пользователя без имени
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, new String[]{"user_id"});
+            statement.setString(1, user.getEmail());
+            statement.setString(2, user.getLogin());
+            statement.setString(3, user.getName());
+            statement.setDate(4, user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()));
+            return statement;
+        }, keyHolder);
+
+        Number id = keyHolder.getKey();
+        if (id == null) {
+            log.error("Ошибка при добавлении пользователя: не получен сгенерированный идентификатор");
+            throw new RuntimeException("Не удалось получить сгенерированный идентификатор для пользователя");
         }
+        user.setId(id.longValue());
         return user;
     }
 
+    @Override
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"user_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        User user = users.get(i);
+                        statement.setString(1, user.getEmail());
+                        statement.setString(2, user.getLogin());
+                        statement.setString(3, user.getName());
+                        statement.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != users.size()) {
+            log.error("Ошибка при пакетном добавлении пользователей: получено {} ключей для {} пользователей",
+                    keys.size(), users.size());
+            throw new RuntimeException("Не удалось получить сгенерированные идентификаторы для пользователей");
+        }
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+        return users;
+    }
+
     @Override
     public User updateUser(User user) {
-        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE user_id = ?";
+        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ?, version = version + 1 "
+                + "WHERE user_id = ?";
         int rowsUpdated = jdbcTemplate.update(sql,
                 user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), user.getId());
 
@@ -57,46 +116,141 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public Optional<User> getUserById(Long id) {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToUser, id).stream().findFirst();
+        return findUsers(true, "WHERE u.user_id = ?", id).stream().findFirst();
     }
 
     @Override
+    public List<User> getUsersByIds(List<Long> ids, boolean includeFriendIds) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> users = new HashMap<>();
+        findUsers(includeFriendIds, "WHERE u.user_id = ANY(?)", (Object) ids.toArray(new Long[0]))
+                .forEach(user -> users.put(user.getId(), user));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        String sql = "SELECT EXISTS(SELECT 1 FROM users WHERE user_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public Optional<Long> getUserVersion(Long id) {
+        String sql = "SELECT version FROM users WHERE user_id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+    }
+
+    @Override
+    @Transactional
     public void deleteUser(Long id) {
+        // Лайки пользователя удаляются каскадом, поэтому счётчики и версии понравившихся ему фильмов
+        // уменьшаются заранее, в той же транзакции
+        List<Object[]> likedFilms = jdbcTemplate.queryForList("SELECT film_id FROM likes WHERE user_id = ?",
+                        Long.class, id).stream()
+                .map(filmId -> new Object[]{-1, 1, filmId})
+                .toList();
+        FilmDbStorage.changeLikesCounts(jdbcTemplate, likedFilms);
+        // Строки дружбы, где пользователь - друг, тоже удаляются каскадом: списки друзей
+        // добавивших его пользователей меняются, поэтому их версии растут для ETag
+        jdbcTemplate.update("UPDATE users SET version = version + 1 "
+                + "WHERE user_id IN (SELECT user_id FROM friendship WHERE friend_id = ?)", id);
         String sql = "DELETE FROM users WHERE user_id = ?";
         jdbcTemplate.update(sql, id);
     }
 
     @Override
     public List<User> getAllUsers() {
-        String sql = "SELECT * FROM users";
-        return jdbcTemplate.query(sql, this::mapRowToUser);
+        return findUsers(true, "ORDER BY u.user_id");
+    }
+
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        return findUsers(true, "WHERE u.user_id > ? ORDER BY u.user_id LIMIT ?", afterId, limit);
+    }
+
+    @Override
+    public List<User> getFriends(Long userId, boolean includeFriendIds) {
+        return findUsers(includeFriendIds,
+                "JOIN friendship f ON u.user_id = f.friend_id WHERE f.user_id = ? ORDER BY u.user_id", userId);
+    }
+
+    @Override
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        // Пересечение считает сама БД: самосоединение friendship по friend_id
+        return findUsers(true, "JOIN friendship f1 ON u.user_id = f1.friend_id " +
+                "JOIN friendship f2 ON u.user_id = f2.friend_id " +
+                "WHERE f1.user_id = ? AND f2.user_id = ? ORDER BY u.user_id", userId, otherId);
     }
 
-    public void addFriend(Long userId, Long friendId) {
-        String sql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+    @Override
+    @Transactional
+    public boolean addFriend(Long userId, Long friendId) {
+        // Повторное добавление друга ничего не меняет и не приводит к нарушению первичного ключа
+        String sql = "MERGE INTO friendship f "
+                + "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS v(user_id, friend_id) "
+                + "ON f.user_id = v.user_id AND f.friend_id = v.friend_id "
+                + "WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (v.user_id, v.friend_id)";
+        boolean added = jdbcTemplate.update(sql, userId, friendId) > 0;
+        if (added) {
+            incrementVersion(userId);
+        }
+        return added;
     }
 
-    public void removeFriend(Long userId, Long friendId) {
+    @Override
+    @Transactional
+    public boolean removeFriend(Long userId, Long friendId) {
         String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        boolean removed = jdbcTemplate.update(sql, userId, friendId) > 0;
+        if (removed) {
+            incrementVersion(userId);
+        }
+        return removed;
     }
 
-    private User mapRowToUser(ResultSet rs, int rowNum) throws SQLException {
-        // Создаём объект User
+    @Override
+    public void forEachFriendship(FriendshipConsumer consumer) {
+        // Строки передаются потребителю по мере чтения, весь граф в памяти не собирается
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendship", rs -> {
+            consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+        });
+    }
+
+    // Список друзей входит в представление пользователя, поэтому его изменение меняет и версию
+    private void incrementVersion(Long userId) {
+        String sql = "UPDATE users SET version = version + 1 WHERE user_id = ?";
+        jdbcTemplate.update(sql, userId);
+    }
+
+    // Загружает пользователей одним запросом и, при необходимости, ID их друзей одним пакетным запросом
+    private List<User> findUsers(boolean withFriendIds, String condition, Object... args) {
+        Map<Long, User> users = new LinkedHashMap<>();
+        jdbcTemplate.query(USER_SELECT + condition, rs -> {
+            User user = mapRowToUser(rs);
+            users.putIfAbsent(user.getId(), user);
+        }, args);
+
+        if (withFriendIds && !users.isEmpty()) {
+            String friendsSql = "SELECT user_id, friend_id FROM friendship WHERE user_id = ANY(?)";
+            jdbcTemplate.query(friendsSql, rs -> {
+                users.get(rs.getLong("user_id")).getFriends().add(rs.getLong("friend_id"));
+            }, (Object) users.keySet().toArray(new Long[0]));
+        }
+        return new ArrayList<>(users.values());
+    }
+
+    private User mapRowToUser(ResultSet rs) throws SQLException {
         User user = new User();
         user.setId(rs.getLong("user_id"));
         user.setEmail(rs.getString("email"));
         user.setLogin(rs.getString("login"));
         user.setName(rs.getString("name"));
         user.setBirthday(rs.getDate("birthday").toLocalDate());
-
-        // Добавляем друзей
-        String friendsSql = "SELECT friend_id FROM friendship WHERE user_id = ?";
-        List<Long> friends = jdbcTemplate.queryForList(friendsSql, Long.class, user.getId());
-        user.setFriends(new HashSet<>(friends));
-
         return user;
     }
-}
\ No newline at end of file
+}
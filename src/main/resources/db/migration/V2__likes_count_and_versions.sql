@@ -0,0 +1,11 @@
+-- Денормализованный счётчик лайков и индекс для выборки популярных фильмов
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_films_popularity ON films (likes_count DESC, film_id);
+
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id);
+
+-- Версии фильмов и пользователей для ETag: увеличиваются при любом изменении, лайке или изменении друзей
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Первичные ключи связующих таблиц начинаются с film_id/user_id, поэтому обратные выборки
+-- (лайки пользователя, кто добавил пользователя в друзья, фильмы жанра или рейтинга)
+-- получают собственные индексы по второй колонке
+CREATE INDEX IF NOT EXISTS idx_likes_user ON likes (user_id, film_id);
+
+CREATE INDEX IF NOT EXISTS idx_friendship_friend ON friendship (friend_id, user_id);
+
+CREATE INDEX IF NOT EXISTS idx_film_genre_genre ON film_genre (genre_id, film_id);
+
+CREATE INDEX IF NOT EXISTS idx_film_mpa_rating_mpa ON film_mpa_rating (mpa_rating_id, film_id);
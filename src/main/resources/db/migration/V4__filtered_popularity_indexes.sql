@@ -0,0 +1,19 @@
+-- Упорядоченные пути доступа для популярных фильмов с фильтрами. Счётчик лайков копируется
+-- в связи с жанрами и рейтингами, год выпуска вычисляется из даты, и у каждого фильтра свой индекс
+-- (значение фильтра, likes_count DESC, film_id): первые фильмы жанра, рейтинга или года
+-- читаются из него по порядку, а не выбираются из всего индекса idx_films_popularity
+ALTER TABLE film_genre ADD COLUMN IF NOT EXISTS likes_count INT NOT NULL DEFAULT 0;
+
+ALTER TABLE film_mpa_rating ADD COLUMN IF NOT EXISTS likes_count INT NOT NULL DEFAULT 0;
+
+UPDATE film_genre fg SET likes_count = (SELECT f.likes_count FROM films f WHERE f.film_id = fg.film_id);
+
+UPDATE film_mpa_rating fmr SET likes_count = (SELECT f.likes_count FROM films f WHERE f.film_id = fmr.film_id);
+
+ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year INT GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+
+CREATE INDEX IF NOT EXISTS idx_film_genre_popularity ON film_genre (genre_id, likes_count DESC, film_id);
+
+CREATE INDEX IF NOT EXISTS idx_film_mpa_rating_popularity ON film_mpa_rating (mpa_rating_id, likes_count DESC, film_id);
+
+CREATE INDEX IF NOT EXISTS idx_films_year_popularity ON films (release_year, likes_count DESC, film_id);
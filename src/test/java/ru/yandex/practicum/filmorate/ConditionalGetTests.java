@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+public class ConditionalGetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void userEtagShouldChangeWhenFriendsChange() throws Exception {
+        // Создаем двух пользователей
+        long userId = createUser("etag1");
+        long friendId = createUser("etag2");
+
+        // Первый запрос возвращает ETag, повторный с If-None-Match - 304 без тела
+        String etag = getEtag("/users/" + userId);
+        mockMvc.perform(get("/users/" + userId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // Добавление друга меняет версию пользователя
+        mockMvc.perform(put("/users/" + userId + "/friends/" + friendId)).andExpect(status().isOk());
+        mockMvc.perform(get("/users/" + userId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.friends[0]").value(friendId));
+        assertNotEquals(etag, getEtag("/users/" + userId));
+    }
+
+    @Test
+    public void filmEtagShouldChangeWhenLiked() throws Exception {
+        long userId = createUser("etag3");
+        MvcResult created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Film\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\","
+                                + "\"duration\":90,\"mpa\":{\"id\":1}}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        long filmId = ((Number) JsonPath.read(
+                created.getResponse().getContentAsString(), "$.id")).longValue();
+
+        String etag = getEtag("/films/" + filmId);
+        mockMvc.perform(get("/films/" + filmId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // Лайк меняет версию фильма
+        mockMvc.perform(put("/films/" + filmId + "/like/" + userId)).andExpect(status().isOk());
+        mockMvc.perform(get("/films/" + filmId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void referenceDataShouldBeCacheable() throws Exception {
+        String etag = mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    private long createUser(String login) throws Exception {
+        MvcResult result = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + login + "@example.com\",\"login\":\"" + login + "\","
+                                + "\"name\":\"" + login + "\",\"birthday\":\"2000-01-01\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return ((Number) JsonPath.read(
+                result.getResponse().getContentAsString(), "$.id")).longValue();
+    }
+
+    private String getEtag(String path) throws Exception {
+        String etag = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+}
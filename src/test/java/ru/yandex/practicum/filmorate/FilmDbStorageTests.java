@@ -9,26 +9,40 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.genre;
+import static ru.yandex.practicum.filmorate.TestData.ids;
+import static ru.yandex.practicum.filmorate.TestData.mpa;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import(FilmDbStorage.class)
+@Import({FilmDbStorage.class, LikeWriteBuffer.class, GenreDbStorage.class, MpaDbStorage.class,
+        SqlStatementRecorder.class})
 public class FilmDbStorageTests {
 
     private final FilmDbStorage filmDbStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
 
     @BeforeEach
     public void setUp() {
@@ -119,6 +133,23 @@ public class FilmDbStorageTests {
         assertTrue(filmOptional.isEmpty());
     }
 
+    @Test
+    public void existsByIdShouldUseSinglePrimaryKeyProbe() {
+        // Добавляем фильм с жанрами и лайками
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                "Test Film", "Test Description", Date.valueOf("2024-01-01"), 120);
+        Long filmId = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Test Film'", Long.class);
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, 1)", filmId);
+
+        // Проверяем наличие существующего и отсутствующего фильма
+        sqlStatementRecorder.reset();
+        assertTrue(filmDbStorage.existsById(filmId));
+        assertFalse(filmDbStorage.existsById(filmId + 1));
+
+        // Каждая проверка - один запрос, связи фильма не загружаются
+        assertEquals(2, sqlStatementRecorder.getStatementCount());
+    }
+
     @Test
     public void getAllFilmsShouldReturnAllExistingFilms() {
         // Добавляем фильмы
@@ -162,5 +193,212 @@ public class FilmDbStorageTests {
                 Integer.class, filmId, userId);
         assertEquals(likeCount,0);
     }
-}
 
+    @Test
+    public void repeatedLikeShouldBeIdempotent() {
+        // Добавляем фильм и пользователя
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                "Test Film", "Test Description", Date.valueOf("2024-01-01"), 120);
+        Long filmId = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Test Film'", Long.class);
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "test@example.com", "testuser", "Test User", Date.valueOf("2000-01-01"));
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'testuser'", Long.class);
+
+        // Ставим лайк дважды: второй раз ничего не меняет и не падает
+        assertTrue(filmDbStorage.addLike(filmId, userId));
+        assertFalse(filmDbStorage.addLike(filmId, userId));
+
+        // Счётчик лайков увеличился один раз
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, filmId));
+
+        // Повторное снятие лайка тоже ничего не меняет
+        assertTrue(filmDbStorage.removeLike(filmId, userId));
+        assertFalse(filmDbStorage.removeLike(filmId, userId));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, filmId));
+    }
+
+    @Test
+    public void getAllFilmsShouldUseConstantNumberOfStatements() {
+        // Добавляем пользователя и 100 фильмов с MPA, жанрами и лайком
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "test@example.com", "testuser", "Test User", Date.valueOf("2000-01-01"));
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'testuser'", Long.class);
+        for (int i = 0; i < 100; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                    "Film " + i, "Description " + i, Date.valueOf("2024-01-01"), 100);
+            Long filmId = jdbcTemplate.queryForObject("SELECT MAX(film_id) FROM films", Long.class);
+            jdbcTemplate.update("INSERT INTO film_mpa_rating (film_id, mpa_rating_id) VALUES (?, ?)", filmId, 1);
+            jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", filmId, 1);
+            jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", filmId, 2);
+            jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        }
+
+        // Получаем все фильмы, считая запросы
+        sqlStatementRecorder.reset();
+        List<Film> films = filmDbStorage.getAllFilms();
+
+        // Фильмы с MPA, жанры и лайки - по одному запросу на каждую часть
+        assertEquals(3, sqlStatementRecorder.getStatementCount());
+        assertEquals(100, films.size());
+        Film film = films.get(0);
+        assertEquals(1L, film.getMpa().getId());
+        assertEquals("G", film.getMpa().getName());
+        assertEquals(2, film.getGenres().size());
+        assertEquals(Set.of(userId), film.getLikes());
+    }
+
+    @Test
+    public void mostPopularFilmsShouldBeOrderedByLikeCount() {
+        // Добавляем три фильма и двух пользователей
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                    "Film " + i, "Description " + i, Date.valueOf("2024-01-01"), 100);
+        }
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "user1@example.com", "user1", "User 1", Date.valueOf("2000-01-01"));
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "user2@example.com", "user2", "User 2", Date.valueOf("2000-01-01"));
+        Long film2 = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Film 2'", Long.class);
+        Long film3 = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Film 3'", Long.class);
+        Long user1 = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user1'", Long.class);
+        Long user2 = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user2'", Long.class);
+
+        // Film 3 получает два лайка, Film 2 - один после удаления второго
+        filmDbStorage.addLike(film3, user1);
+        filmDbStorage.addLike(film3, user2);
+        filmDbStorage.addLike(film2, user1);
+        filmDbStorage.addLike(film2, user2);
+        filmDbStorage.removeLike(film2, user2);
+
+        // Проверяем порядок и ограничение по количеству
+        List<Film> popular = filmDbStorage.getMostPopularFilms(2);
+        assertEquals(2, popular.size());
+        assertEquals(film3, popular.get(0).getId());
+        assertEquals(film2, popular.get(1).getId());
+        assertEquals(1, popular.get(1).getLikes().size());
+    }
+
+    @Test
+    public void mostPopularFilmsShouldBeFilteredByGenreMpaAndYear() {
+        // Комедии 2020 года с разными рейтингами, драма 2020 года и комедия 2019 года
+        Long comedyG = filmDbStorage.addFilm(film("Comedy G", 2020, 1L, 1L)).getId();
+        Long comedyPg = filmDbStorage.addFilm(film("Comedy PG", 2020, 2L, 1L)).getId();
+        Long drama = filmDbStorage.addFilm(film("Drama", 2020, 1L, 2L)).getId();
+        Long oldComedy = filmDbStorage.addFilm(film("Old Comedy", 2019, 1L, 1L)).getId();
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "fan@example.com", "fan", "Fan", Date.valueOf("2000-01-01"));
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'fan'", Long.class);
+        filmDbStorage.addLike(comedyPg, userId);
+        filmDbStorage.addLike(drama, userId);
+        filmDbStorage.addLike(oldComedy, userId);
+
+        // Проверяем каждый фильтр отдельно и их сочетание
+        assertEquals(List.of(comedyPg, oldComedy, comedyG), ids(filmDbStorage.getMostPopularFilms(10, 1L, null, null)));
+        assertEquals(List.of(drama, comedyG), ids(filmDbStorage.getMostPopularFilms(10, null, 1L, 2020)));
+        assertEquals(List.of(comedyPg, comedyG), ids(filmDbStorage.getMostPopularFilms(10, 1L, null, 2020)));
+        assertEquals(List.of(comedyG), ids(filmDbStorage.getMostPopularFilms(10, 1L, 1L, 2020)));
+        assertEquals(List.of(comedyPg), ids(filmDbStorage.getMostPopularFilms(1, 1L, null, 2020)));
+        assertTrue(filmDbStorage.getMostPopularFilms(10, 1L, 2L, 2019).isEmpty());
+
+        // Новые жанр, рейтинг и год фильма с лайками сразу учитываются в порядке
+        Film updated = film("Drama", 2019, 2L, 1L);
+        updated.setId(drama);
+        filmDbStorage.updateFilm(updated);
+        assertEquals(List.of(comedyPg, drama, oldComedy, comedyG),
+                ids(filmDbStorage.getMostPopularFilms(10, 1L, null, null)));
+        assertEquals(List.of(comedyPg, drama), ids(filmDbStorage.getMostPopularFilms(10, null, 2L, null)));
+        assertEquals(List.of(drama, oldComedy), ids(filmDbStorage.getMostPopularFilms(10, null, null, 2019)));
+        filmDbStorage.removeLike(drama, userId);
+        assertEquals(List.of(comedyPg, drama), ids(filmDbStorage.getMostPopularFilms(10, null, 2L, null)));
+    }
+
+    @Test
+    public void filmSummariesShouldCarryLikeCounts() {
+        Long filmId = filmDbStorage.addFilm(film("Summary", 2020, 1L, 1L)).getId();
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                "summary@example.com", "summary", "Summary", Date.valueOf("2000-01-01"));
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'summary'", Long.class);
+        filmDbStorage.addLike(filmId, userId);
+
+        // Проекция для поискового индекса - один запрос без загрузки жанров и лайков
+        List<String> summaries = new ArrayList<>();
+        sqlStatementRecorder.assertStatementCount(1, () -> filmDbStorage.forEachFilmSummary(
+                (id, name, description, likes) -> summaries.add(id + " " + name + " " + description + " " + likes)));
+        assertTrue(summaries.contains(filmId + " Summary Description 1"));
+    }
+
+    @Test
+    public void filmsPageShouldStartAfterCursorAndRespectLimit() {
+        // Добавляем пять фильмов
+        for (int i = 1; i <= 5; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                    "Film " + i, "Description " + i, Date.valueOf("2024-01-01"), 100);
+        }
+        Long secondId = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Film 2'", Long.class);
+
+        // Получаем страницу после второго фильма
+        List<Film> page = filmDbStorage.getFilmsPage(secondId, 2);
+
+        // Проверяем границы страницы
+        assertEquals(2, page.size());
+        assertEquals("Film 3", page.get(0).getName());
+        assertEquals("Film 4", page.get(1).getName());
+    }
+
+    @Test
+    public void filmUpdateShouldWriteOnlyChangedLinks() {
+        // Добавляем фильм с MPA и двумя жанрами
+        Film film = new Film();
+        film.setName("Test Film");
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2024, 1, 1));
+        film.setDuration(120);
+        film.setMpa(mpa(1L));
+        film.setGenres(new LinkedHashSet<>(List.of(genre(1L), genre(2L))));
+        filmDbStorage.addFilm(film);
+
+        // Обновление без изменения связей: UPDATE фильма и одно чтение текущих связей
+        sqlStatementRecorder.reset();
+        filmDbStorage.updateFilm(film);
+        assertEquals(2, sqlStatementRecorder.getStatementCount());
+
+        // Меняем MPA и заменяем один жанр
+        film.setMpa(mpa(3L));
+        film.setGenres(new LinkedHashSet<>(List.of(genre(2L), genre(3L))));
+        filmDbStorage.updateFilm(film);
+
+        // Проверяем итоговые связи
+        Film savedFilm = filmDbStorage.getFilmById(film.getId()).orElseThrow();
+        assertEquals(3L, savedFilm.getMpa().getId());
+        assertEquals(List.of(2L, 3L), savedFilm.getGenres().stream().map(Genre::getId).toList());
+    }
+
+    @Test
+    public void batchFilmAdditionShouldAssignIdsAndLinks() {
+        // Готовим пачку фильмов с MPA и жанрами
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2024, 1, i));
+            film.setDuration(100 + i);
+            film.setMpa(mpa((long) i));
+            film.setGenres(new LinkedHashSet<>(List.of(genre((long) i))));
+            films.add(film);
+        }
+
+        // Добавляем пачку: фильмы, MPA и жанры - по одному пакетному запросу
+        sqlStatementRecorder.reset();
+        filmDbStorage.addFilms(films);
+        assertEquals(3, sqlStatementRecorder.getStatementCount());
+
+        // Проверяем, что ID присвоены по порядку и связи сохранены
+        List<Film> saved = filmDbStorage.getAllFilms();
+        assertEquals(films.stream().map(Film::getId).toList(), saved.stream().map(Film::getId).toList());
+        assertEquals(2L, saved.get(1).getMpa().getId());
+        assertEquals(List.of(3L), saved.get(2).getGenres().stream().map(Genre::getId).toList());
+    }
+}
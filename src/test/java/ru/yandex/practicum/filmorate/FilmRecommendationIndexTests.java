@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationIndex;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmRecommendationIndexTests {
+
+    @Test
+    public void recommendationsShouldFollowCoLikes() {
+        FilmRecommendationIndex index = new FilmRecommendationIndex();
+        // Пользователи 1 и 2 лайкают фильмы 1 и 2, пользователь 2 ещё и фильм 3,
+        // пользователь 3 - фильмы 1 и 4
+        index.addLike(1, 1);
+        index.addLike(2, 1);
+        index.addLike(1, 2);
+        index.addLike(2, 2);
+        index.addLike(3, 2);
+        index.addLike(1, 3);
+        index.addLike(4, 3);
+
+        // Фильм 3 связан с обоими лайками пользователя 1, фильм 4 - только с одним
+        assertEquals(List.of(3L, 4L), index.recommend(1, 10));
+        assertEquals(List.of(3L), index.recommend(1, 1));
+        // Уже лайкнутые фильмы не рекомендуются, у незнакомого пользователя рекомендаций нет
+        assertEquals(List.of(2L, 3L), index.recommend(3, 10));
+        assertTrue(index.recommend(99, 10).isEmpty());
+
+        // Снятие лайка и удаление фильма убирают связи
+        index.removeLike(3, 2);
+        assertEquals(List.of(4L), index.recommend(1, 10));
+        index.removeFilm(4);
+        assertTrue(index.recommend(1, 10).isEmpty());
+    }
+
+    @Test
+    public void changesDuringRebuildShouldNotBeLost() {
+        FilmRecommendationIndex index = new FilmRecommendationIndex();
+        // Пока читаются лайки, пользователь 1 снимает уже прочитанный лайк и ставит новый
+        index.rebuild(consumer -> {
+            consumer.accept(1, 1);
+            consumer.accept(2, 1);
+            consumer.accept(1, 2);
+            consumer.accept(2, 2);
+            consumer.accept(3, 2);
+            index.removeLike(2, 1);
+            index.addLike(4, 1);
+        });
+
+        // Снятый лайк не вернулся, новый учтён: фильм 2 снова рекомендуется, фильм 4 - нет
+        assertEquals(List.of(2L, 3L), index.recommend(1, 10));
+        assertEquals(List.of(4L), index.recommend(2, 10));
+    }
+
+    @Test
+    public void incrementalUpdatesShouldMatchRebuiltModel() {
+        FilmRecommendationIndex incremental = new FilmRecommendationIndex();
+        Set<List<Long>> likes = new HashSet<>();
+        Random random = new Random(42);
+
+        // Случайные лайки и снятия лайков, включая повторы
+        for (int i = 0; i < 20_000; i++) {
+            long filmId = 1 + random.nextInt(200);
+            long userId = 1 + random.nextInt(50);
+            if (random.nextInt(3) == 0) {
+                incremental.removeLike(filmId, userId);
+                likes.remove(List.of(filmId, userId));
+            } else {
+                incremental.addLike(filmId, userId);
+                likes.add(List.of(filmId, userId));
+            }
+        }
+
+        // Модель, построенная заново по итоговым лайкам, должна находить тех же кандидатов;
+        // порядок сравнивается только в первом тесте, суммы сходства могут отличаться в последних знаках
+        FilmRecommendationIndex rebuilt = new FilmRecommendationIndex();
+        likes.forEach(like -> rebuilt.addLike(like.get(0), like.get(1)));
+        // Полная перестройка поверх устаревшей модели заменяет её целиком
+        FilmRecommendationIndex bulk = new FilmRecommendationIndex();
+        bulk.addLike(999, 1);
+        bulk.rebuild(consumer -> likes.forEach(like -> consumer.accept(like.get(0), like.get(1))));
+        for (long userId = 1; userId <= 50; userId++) {
+            assertEquals(new HashSet<>(rebuilt.recommend(userId, Integer.MAX_VALUE)),
+                    new HashSet<>(incremental.recommend(userId, Integer.MAX_VALUE)));
+            assertEquals(new HashSet<>(rebuilt.recommend(userId, Integer.MAX_VALUE)),
+                    new HashSet<>(bulk.recommend(userId, Integer.MAX_VALUE)));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmSearchIndexTests {
+
+    @Test
+    public void searchShouldMatchRussianWordFormsAndEnglishPrefixes() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.rebuild(entries(
+                film(1, "Матрица", "Хакер узнаёт правду о мире", Set.of()),
+                film(2, "Матрица: Перезагрузка", "Продолжение истории", Set.of()),
+                film(3, "The Terminator", "A cyborg assassin is sent back in time", Set.of())));
+
+        // Падеж и буква ё не мешают совпадению, префикс слова находит полное слово
+        assertEquals(List.of(1L, 2L), index.search("матрицы", 10));
+        assertEquals(List.of(1L), index.search("узнает", 10));
+        assertEquals(List.of(3L), index.search("termin", 10));
+        assertEquals(List.of(3L), index.search("CYBORGS", 10));
+
+        // Все слова запроса должны встретиться в фильме
+        assertEquals(List.of(2L), index.search("матрица перезагрузка", 10));
+        assertTrue(index.search("матрица cyborg", 10).isEmpty());
+        assertTrue(index.search("  ,. ", 10).isEmpty());
+    }
+
+    @Test
+    public void resultsShouldBeRankedByRelevanceThenLikes() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.rebuild(entries(
+                film(1, "Space", "Documentary", Set.of()),
+                film(2, "Odyssey", "A journey through space", Set.of(1L, 2L)),
+                film(3, "Space Odyssey", "Classic", Set.of(1L))));
+
+        // Совпадение в названии весит больше, при равной релевантности выше фильм с большим числом лайков
+        assertEquals(List.of(3L, 1L, 2L), index.search("space", 10));
+        index.changeLikes(1L, 2);
+        assertEquals(List.of(1L, 3L, 2L), index.search("space", 10));
+        assertEquals(List.of(1L, 3L), index.search("space", 2));
+    }
+
+    @Test
+    public void indexShouldFollowUpdatesAndDeletes() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(film(1, "Old title", "Description", Set.of(1L)));
+        index.index(film(2, "Another title", "Description", Set.of()));
+
+        // Обновление заменяет термы, но сохраняет число лайков
+        index.index(film(1, "New title", "Description", Set.of()));
+        assertTrue(index.search("old", 10).isEmpty());
+        assertEquals(List.of(1L, 2L), index.search("title", 10));
+
+        index.remove(1L);
+        assertEquals(List.of(2L), index.search("title", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void changesDuringRebuildShouldNotBeLost() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(film(1, "Stale film", "Description", Set.of()));
+
+        // Пока источник отдаёт фильмы, приходят новый фильм, лайк уже прочитанного и удаление
+        index.rebuild(entries -> {
+            entries.accept(FilmSearchIndex.Entry.of(film(2, "Space", "Description", Set.of())));
+            entries.accept(FilmSearchIndex.Entry.of(film(3, "Space", "Description", Set.of())));
+            entries.accept(FilmSearchIndex.Entry.of(film(4, "Space", "Description", Set.of())));
+            index.index(film(5, "Space", "Description", Set.of(1L, 2L, 3L)));
+            index.changeLikes(3L, 2);
+            index.remove(4L);
+        });
+
+        // Прежний индекс заменён, изменения за время перестройки повторены на новом
+        assertTrue(index.search("stale", 10).isEmpty());
+        assertEquals(List.of(5L, 3L, 2L), index.search("space", 10));
+    }
+
+    private static List<FilmSearchIndex.Entry> entries(Film... films) {
+        return Arrays.stream(films).map(FilmSearchIndex.Entry::of).toList();
+    }
+
+    private static Film film(long id, String name, String description, Set<Long> likes) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        film.setLikes(new HashSet<>(likes));
+        return film;
+    }
+}
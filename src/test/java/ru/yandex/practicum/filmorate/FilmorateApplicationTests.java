@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
@@ -21,6 +23,8 @@ public class FilmorateApplicationTests {
 
     ValidatorFactory factory;
     private Validator validator;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
@@ -28,6 +32,13 @@ public class FilmorateApplicationTests {
         validator = factory.getValidator();
     }
 
+    @Test
+    void jdbcLimiterMetricsShouldBeInApplicationRegistry() {
+        // Метрики лимитера попадают в реестр приложения с тегом DataSource
+        assertEquals(0, meterRegistry.get("filmorate.jdbc.connections.pending")
+                .tag("datasource", "dataSource").gauge().value());
+    }
+
     @Test
     void filmValidation_Before1895DateShouldFail() {
         Film film = new Film();
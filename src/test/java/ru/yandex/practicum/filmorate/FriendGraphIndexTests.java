@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.recommendation.FriendGraphIndex;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendGraphIndexTests {
+
+    @Test
+    public void suggestionsShouldBeRankedByMutualFriends() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        // У пользователя 1 друзья 2, 3 и 4; пользователь 5 - друг у троих из них, 6 - у двоих, 7 - у одного
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 4);
+        for (long friendId : new long[]{2, 3, 4}) {
+            graph.addFriend(friendId, 5);
+        }
+        graph.addFriend(2, 6);
+        graph.addFriend(3, 6);
+        graph.addFriend(4, 7);
+        // Друг друга, уже добавленный в друзья, и сам пользователь не предлагаются
+        graph.addFriend(2, 3);
+        graph.addFriend(4, 1);
+
+        assertEquals(List.of(5L, 6L, 7L), graph.suggest(1, 10));
+        assertEquals(List.of(5L, 6L), graph.suggest(1, 2));
+        assertTrue(graph.suggest(99, 10).isEmpty());
+
+        // Изменения дружбы сразу меняют предложения: без друга 4 пропадает пользователь 7,
+        // а 5 и 6 сравниваются по ID
+        graph.removeFriend(1, 4);
+        assertEquals(List.of(5L, 6L), graph.suggest(1, 10));
+        graph.addFriend(1, 5);
+        assertEquals(List.of(6L), graph.suggest(1, 10));
+    }
+
+    @Test
+    public void equalMutualCountsShouldBeOrderedById() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        graph.addFriend(1, 2);
+        graph.addFriend(2, 30);
+        graph.addFriend(2, 10);
+        graph.addFriend(2, 20);
+
+        assertEquals(List.of(10L, 20L, 30L), graph.suggest(1, 10));
+    }
+
+    @Test
+    public void rebuildShouldReplaceGraphAndKeepConcurrentChanges() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        graph.addFriend(1, 99);
+        // Связи читаются в произвольном порядке, с повтором; пока идёт чтение,
+        // пользователь 1 удаляет уже прочитанного друга 3 и добавляет друга 4
+        graph.rebuild(consumer -> {
+            consumer.accept(1, 3);
+            consumer.accept(2, 10);
+            consumer.accept(1, 2);
+            consumer.accept(3, 10);
+            consumer.accept(3, 5);
+            consumer.accept(2, 10);
+            graph.removeFriend(1, 3);
+            graph.addFriend(1, 4);
+            consumer.accept(4, 5);
+        });
+
+        // Друг 99 из прежнего графа пропал, удаление не потерялось, новый друг учтён
+        assertEquals(Set.of(2L, 4L), toSet(graph.getFriendIds(1)));
+        assertEquals(List.of(5L, 10L), graph.suggest(1, 10));
+    }
+
+    private static Set<Long> toSet(long[] ids) {
+        return LongStream.of(ids).boxed().collect(Collectors.toSet());
+    }
+}
@@ -19,11 +19,12 @@ import static org.junit.jupiter.api.Assertions.*;
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import(GenreDbStorage.class)
+@Import({GenreDbStorage.class, SqlStatementRecorder.class})
 public class GenreDbStorageTests {
 
     private final GenreDbStorage genreDbStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
 
     @BeforeEach
     public void setUp() {
@@ -33,6 +34,7 @@ public class GenreDbStorageTests {
         jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (3, 'Триллер')");
         jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (4, 'Фантастика')");
         jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (5, 'Документальный')");
+        genreDbStorage.refresh();
     }
 
     @Test
@@ -69,4 +71,30 @@ public class GenreDbStorageTests {
         // Проверяем, что результат пустой
         assertTrue(genreOptional.isEmpty());
     }
+
+    @Test
+    public void genreLookupsShouldBeServedFromCacheUntilRefresh() {
+        // Повторные обращения к справочнику не выполняют запросов
+        sqlStatementRecorder.reset();
+        genreDbStorage.getAllGenres();
+        genreDbStorage.getGenreById(1L);
+        genreDbStorage.getGenreById(99L);
+        assertEquals(0, sqlStatementRecorder.getStatementCount());
+
+        // Изменение таблицы становится видно только после явного обновления кеша
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (6, 'Боевик')");
+        assertTrue(genreDbStorage.getGenreById(6L).isEmpty());
+        genreDbStorage.refresh();
+        assertEquals("Боевик", genreDbStorage.getGenreById(6L).orElseThrow().getName());
+    }
+
+    @Test
+    public void cachedValuesShouldNotBeChangedThroughReturnedObjects() {
+        // Изменение полученного объекта, например в фильме, не портит справочник
+        genreDbStorage.getGenreById(1L).orElseThrow().setName("Изменено");
+        genreDbStorage.getAllGenres().get(0).setName("Изменено");
+
+        assertNotEquals("Изменено", genreDbStorage.getGenreById(1L).orElseThrow().getName());
+        assertNotEquals("Изменено", genreDbStorage.getAllGenres().get(0).getName());
+    }
 }
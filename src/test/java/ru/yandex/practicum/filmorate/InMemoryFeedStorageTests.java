@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.InMemoryFeedStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryFeedStorageTests {
+
+    @Test
+    public void eventsShouldBeMergedFromNewestAndPaginatedById() {
+        InMemoryFeedStorage storage = new InMemoryFeedStorage(10);
+        // События пользователей 1 и 2 чередуются, пользователь 3 в выборку не входит
+        for (long entityId = 1; entityId <= 3; entityId++) {
+            storage.addEvent(1, Event.EventType.LIKE, Event.Operation.ADD, entityId);
+            storage.addEvent(2, Event.EventType.FRIEND, Event.Operation.REMOVE, entityId);
+            storage.addEvent(3, Event.EventType.LIKE, Event.Operation.ADD, entityId);
+        }
+        long[] userIds = {1, 2};
+
+        List<Event> firstPage = storage.getEvents(userIds, Long.MAX_VALUE, 4);
+        assertEquals(List.of(8L, 7L, 5L, 4L), eventIds(firstPage));
+        Event latest = firstPage.get(0);
+        assertEquals(2, latest.getUserId());
+        assertEquals(Event.EventType.FRIEND, latest.getEventType());
+        assertEquals(Event.Operation.REMOVE, latest.getOperation());
+        assertEquals(3, latest.getEntityId());
+
+        assertEquals(List.of(2L, 1L), eventIds(storage.getEvents(userIds, 4, 4)));
+        assertTrue(storage.getEvents(new long[]{99}, Long.MAX_VALUE, 4).isEmpty());
+    }
+
+    @Test
+    public void oldEventsShouldBeOverwrittenWhenBufferIsFull() {
+        InMemoryFeedStorage storage = new InMemoryFeedStorage(3);
+        for (long entityId = 1; entityId <= 5; entityId++) {
+            storage.addEvent(1, Event.EventType.LIKE, Event.Operation.ADD, entityId);
+        }
+
+        List<Event> events = storage.getEvents(new long[]{1}, Long.MAX_VALUE, 10);
+        assertEquals(List.of(5L, 4L, 3L), events.stream().map(Event::getEntityId).toList());
+    }
+
+    private static List<Long> eventIds(List<Event> events) {
+        return events.stream().map(Event::getEventId).toList();
+    }
+}
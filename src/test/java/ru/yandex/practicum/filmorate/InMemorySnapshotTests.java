@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemorySnapshotStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.genre;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class InMemorySnapshotTests {
+    // Маленькое окно отображения, чтобы записи и длинное описание пересекали границы окон
+    private static final int CHUNK_SIZE = 64;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void restoredStoragesShouldMatchSavedOnes() throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        long first = users.addUser(user("first")).getId();
+        long second = users.addUser(user("second")).getId();
+        users.addFriend(first, second);
+        Film film = films.addFilm(film("Фильм", "Описание ".repeat(20)));
+        films.addLike(film.getId(), first);
+        films.addLike(film.getId(), second);
+        Film deleted = films.addFilm(film("Удалённый", null));
+        films.deleteFilm(deleted.getId());
+
+        Path path = directory.resolve("storage.snapshot");
+        InMemorySnapshotStorage.Summary saved = new InMemorySnapshotStorage(films, users, CHUNK_SIZE).save(path);
+        assertEquals(new InMemorySnapshotStorage.Summary(1, 2), saved);
+        assertFalse(Files.exists(directory.resolve("storage.snapshot.tmp")));
+
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage();
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        InMemorySnapshotStorage.Summary restored =
+                new InMemorySnapshotStorage(restoredFilms, restoredUsers, CHUNK_SIZE).restore(path);
+
+        assertEquals(saved, restored);
+        assertEquals(films.getAllFilms(), restoredFilms.getAllFilms());
+        assertEquals(users.getAllUsers(), restoredUsers.getAllUsers());
+        assertEquals(films.getFilmVersion(film.getId()), restoredFilms.getFilmVersion(film.getId()));
+        assertEquals(users.getUserVersion(first), restoredUsers.getUserVersion(first));
+
+        // Восстановленные хранилища продолжают работать: ID не повторяются, множества изменяемы
+        assertEquals(deleted.getId() + 1, restoredFilms.addFilm(film("Новый", null)).getId());
+        assertTrue(restoredFilms.removeLike(film.getId(), first));
+        assertTrue(restoredUsers.addFriend(second, first));
+    }
+
+    @Test
+    public void truncatedSnapshotShouldLeaveStoragesEmpty() throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        films.addFilm(film("Фильм", "Описание"));
+        users.addUser(user("user"));
+        Path path = directory.resolve("storage.snapshot");
+        InMemorySnapshotStorage snapshots = new InMemorySnapshotStorage(films, users, CHUNK_SIZE);
+        snapshots.save(path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> snapshots.restore(path));
+        assertEquals(List.of(), films.getAllFilms());
+        assertEquals(List.of(), users.getAllUsers());
+    }
+
+    @Test
+    public void corruptSnapshotShouldBeMovedAsideBeforeNextSave() throws IOException {
+        Path path = directory.resolve("storage.snapshot");
+        byte[] corrupt = {1, 2, 3};
+        Files.write(path, corrupt);
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        SnapshotService service = new SnapshotService(
+                new InMemorySnapshotStorage(films, users, CHUNK_SIZE), true, path);
+
+        service.restore();
+        films.addFilm(film("Фильм", null));
+        service.save();
+
+        // Повреждённый файл сохранён рядом, а по основному пути лежит новый снимок
+        List<Path> corruptCopies;
+        try (Stream<Path> files = Files.list(directory)) {
+            corruptCopies = files.filter(file -> file.getFileName().toString().startsWith("storage.snapshot.corrupt-"))
+                    .toList();
+        }
+        assertEquals(1, corruptCopies.size());
+        assertArrayEquals(corrupt, Files.readAllBytes(corruptCopies.get(0)));
+        InMemorySnapshotStorage.Summary restored = new InMemorySnapshotStorage(
+                new InMemoryFilmStorage(), new InMemoryUserStorage(), CHUNK_SIZE).restore(path);
+        assertEquals(new InMemorySnapshotStorage.Summary(1, 0), restored);
+    }
+
+    // Снимок должен сохранять и названия рейтинга и жанров, поэтому они заполнены
+    private static Film film(String name, String description) {
+        Film film = TestData.film(name, 2000, 1L, 2L);
+        film.setDescription(description);
+        film.getMpa().setName("G");
+        Genre drama = genre(2L);
+        drama.setName("Драма");
+        film.setGenres(new LinkedHashSet<>(Set.of(drama)));
+        return film;
+    }
+}
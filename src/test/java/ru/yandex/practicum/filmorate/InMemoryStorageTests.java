@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class InMemoryStorageTests {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 1000;
+
+    @Test
+    public void concurrentFilmAdditionShouldAllocateUniqueIds() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+
+        // Добавляем фильмы из нескольких потоков одновременно
+        List<Long> ids = runConcurrently(() -> storage.addFilm(film("Test Film")).getId());
+
+        // Проверяем, что все ID уникальны и ни одна запись не потерялась
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, new HashSet<>(ids).size());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, storage.getAllFilms().size());
+    }
+
+    @Test
+    public void concurrentLikesShouldNotBeLost() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Long filmId = storage.addFilm(film("Test Film")).getId();
+
+        // Лайки и параллельные обновления фильма из нескольких потоков
+        AtomicLong nextUserId = new AtomicLong();
+        List<Long> userIds = runConcurrently(() -> {
+            long userId = nextUserId.incrementAndGet();
+            storage.addLike(filmId, userId);
+            if (userId % 10 == 0) {
+                Film update = film("Test Film");
+                update.setId(filmId);
+                storage.updateFilm(update);
+            }
+            return userId;
+        });
+
+        // Проверяем, что обновления не затёрли лайки
+        Set<Long> likes = storage.getFilmById(filmId).orElseThrow().getLikes();
+        assertEquals(new HashSet<>(userIds), likes);
+    }
+
+    @Test
+    public void popularFilmsShouldBeRankedWhileLikesChange() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            filmIds.add(storage.addFilm(film("Test Film")).getId());
+        }
+
+        // Лайки меняются во время выборки популярных: сортировка не должна падать
+        AtomicLong operation = new AtomicLong();
+        runConcurrently(() -> {
+            long number = operation.incrementAndGet();
+            Long filmId = filmIds.get((int) (number * 31 % filmIds.size()));
+            if (number % 50 == 0) {
+                assertEquals(10, storage.getMostPopularFilms(10).size());
+            } else if (number % 3 == 0) {
+                storage.removeLike(filmId, number % 7);
+            } else {
+                storage.addLike(filmId, number % 7);
+            }
+            return number;
+        });
+
+        // При равном числе лайков фильмы идут по ID
+        InMemoryFilmStorage ties = new InMemoryFilmStorage();
+        Long first = ties.addFilm(film("Test Film")).getId();
+        Long second = ties.addFilm(film("Test Film")).getId();
+        Long third = ties.addFilm(film("Test Film")).getId();
+        ties.addLike(third, 1L);
+        assertEquals(List.of(third, first, second),
+                ties.getMostPopularFilms(3).stream().map(Film::getId).toList());
+    }
+
+    @Test
+    public void concurrentFriendAdditionShouldKeepAllFriends() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        Long userId = storage.addUser(user("testuser")).getId();
+
+        // Добавляем пользователей и дружбу с ними из нескольких потоков
+        List<Long> friendIds = runConcurrently(() -> {
+            Long friendId = storage.addUser(user("testuser")).getId();
+            storage.addFriend(userId, friendId);
+            return friendId;
+        });
+
+        // Проверяем, что все друзья сохранились и возвращаются в порядке ID
+        List<User> friends = storage.getFriends(userId, false);
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, friends.size());
+        assertEquals(friendIds.stream().sorted().toList(), friends.stream().map(User::getId).toList());
+        assertTrue(storage.getUserById(-1L).isEmpty());
+    }
+
+    private static <T> List<T> runConcurrently(Supplier<T> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<T>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<T> results = new ArrayList<>();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        results.add(operation.get());
+                    }
+                    return results;
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<List<T>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
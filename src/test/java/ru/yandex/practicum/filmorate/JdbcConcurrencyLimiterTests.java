@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.config.JdbcConcurrencyLimiter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JdbcConcurrencyLimiterTests {
+
+    @Test
+    public void connectionsOverLimitShouldWaitAndTimeOut() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(1, Duration.ofMillis(50), registry);
+        DataSource dataSource = (DataSource) limiter.postProcessAfterInitialization(
+                new DriverManagerDataSource("jdbc:h2:mem:limiter"), "dataSource");
+
+        // Единственное разрешение занято: второе соединение не выдаётся
+        Connection first = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(1, registry.get("filmorate.jdbc.connection.rejected").tag("datasource", "dataSource").counter().count());
+
+        // После закрытия (даже повторного) разрешение возвращается ровно один раз
+        first.close();
+        first.close();
+        try (Connection second = dataSource.getConnection()) {
+            second.createStatement().execute("SELECT 1");
+        }
+        assertEquals(0, active(registry, "dataSource"));
+
+        // Ожидание соединения и выполнение запроса учтены в разных таймерах
+        assertEquals(2, registry.get("filmorate.jdbc.connection.wait").tag("datasource", "dataSource").timer().count());
+        assertEquals(1, registry.get("filmorate.jdbc.query").tag("datasource", "dataSource").timer().count());
+    }
+
+    @Test
+    public void eachDataSourceShouldHaveOwnLimitAndTaggedMetrics() throws Exception {
+        // Реестр приложения подключается позже, чем оборачиваются DataSource
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(1, Duration.ofMillis(50));
+        DataSource main = (DataSource) limiter.postProcessAfterInitialization(
+                new DriverManagerDataSource("jdbc:h2:mem:limiter-main"), "main");
+        DataSource reports = (DataSource) limiter.postProcessAfterInitialization(
+                new DriverManagerDataSource("jdbc:h2:mem:limiter-reports"), "reports");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        // Занятое соединение одного DataSource не мешает другому, метрики видны раздельно
+        try (Connection first = main.getConnection(); Connection second = reports.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, main::getConnection);
+            assertEquals(1, active(registry, "main"));
+            assertEquals(1, active(registry, "reports"));
+        }
+        assertEquals(0, active(registry, "main"));
+        assertEquals(1, registry.get("filmorate.jdbc.connection.rejected").tag("datasource", "main")
+                .counter().count());
+        assertEquals(0, registry.get("filmorate.jdbc.connection.rejected").tag("datasource", "reports")
+                .counter().count());
+    }
+
+    private static double active(SimpleMeterRegistry registry, String dataSource) {
+        return registry.get("filmorate.jdbc.connections.active").tag("datasource", dataSource).gauge().value();
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.ids;
+
+// Отложенная запись лайков: изменения сразу видны при чтении, а в таблицу попадают только при записи пакета
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = "filmorate.likes.write-behind.enabled=true")
+@Import({FilmDbStorage.class, LikeWriteBuffer.class, GenreDbStorage.class, MpaDbStorage.class,
+        SqlStatementRecorder.class})
+public class LikeWriteBufferTests {
+    private final FilmDbStorage filmDbStorage;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    private Long popularId;
+    private Long trendingId;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        // Фильм popular уже имеет два лайка в таблице, у trending лайков нет
+        popularId = filmDbStorage.addFilm(film("Popular")).getId();
+        trendingId = filmDbStorage.addFilm(film("Trending")).getId();
+        userIds = List.of(user("first"), user("second"), user("third"));
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?), (?, ?)",
+                popularId, userIds.get(0), popularId, userIds.get(1));
+        jdbcTemplate.update("UPDATE films SET likes_count = 2 WHERE film_id = ?", popularId);
+    }
+
+    @Test
+    public void pendingLikesShouldBeVisibleBeforeFlush() {
+        long version = filmDbStorage.getFilmVersion(trendingId).orElseThrow();
+        for (Long userId : userIds) {
+            assertTrue(filmDbStorage.addLike(trendingId, userId));
+        }
+        assertTrue(filmDbStorage.removeLike(popularId, userIds.get(0)));
+
+        // Повторные операции отвечаются из памяти, без обращения к таблице
+        sqlStatementRecorder.assertStatementCount(0, () -> {
+            assertFalse(filmDbStorage.addLike(trendingId, userIds.get(0)));
+            assertFalse(filmDbStorage.removeLike(popularId, userIds.get(0)));
+        });
+
+        assertEquals(0, countLikes(trendingId));
+        assertEquals(Set.copyOf(userIds), filmDbStorage.getFilmById(trendingId).orElseThrow().getLikes());
+        assertEquals(Set.of(userIds.get(1)), filmDbStorage.getFilmById(popularId).orElseThrow().getLikes());
+        assertEquals(List.of(trendingId, popularId), ids(filmDbStorage.getMostPopularFilms(10)));
+        assertEquals(List.of(trendingId), ids(filmDbStorage.getMostPopularFilms(1)));
+        assertEquals(version + 3, filmDbStorage.getFilmVersion(trendingId).orElseThrow());
+
+        likeWriteBuffer.flush();
+
+        assertEquals(3, countLikes(trendingId));
+        assertEquals(1, countLikes(popularId));
+        assertEquals(3, likesCount(trendingId));
+        assertEquals(1, likesCount(popularId));
+        // После записи версия в таблице совпадает с версией, которую уже видели клиенты
+        assertEquals(version + 3, filmDbStorage.getFilmVersion(trendingId).orElseThrow());
+        assertEquals(List.of(trendingId, popularId), ids(filmDbStorage.getMostPopularFilms(10)));
+    }
+
+    @Test
+    public void opposingChangesShouldCancelOut() {
+        Long userId = userIds.get(2);
+        assertTrue(filmDbStorage.addLike(trendingId, userId));
+        assertTrue(filmDbStorage.removeLike(trendingId, userId));
+        assertTrue(filmDbStorage.addLike(trendingId, userId));
+        assertTrue(filmDbStorage.removeLike(trendingId, userId));
+
+        // В пакете остаётся только увеличение версии, строки лайков не пишутся
+        sqlStatementRecorder.reset();
+        likeWriteBuffer.flush();
+        assertTrue(sqlStatementRecorder.getExecutions().stream()
+                .noneMatch(execution -> execution.sql().contains("likes l") || execution.sql().startsWith("DELETE")));
+        assertEquals(0, countLikes(trendingId));
+        assertEquals(0, likesCount(trendingId));
+        assertFalse(filmDbStorage.removeLike(trendingId, userId));
+    }
+
+    @Test
+    public void likesOfDeletedFilmShouldNotBlockBatch() {
+        assertTrue(filmDbStorage.addLike(popularId, userIds.get(2)));
+        assertTrue(filmDbStorage.addLike(trendingId, userIds.get(0)));
+        filmDbStorage.deleteFilm(popularId);
+        // Лайк после удаления фильма не ставится в очередь
+        assertFalse(filmDbStorage.addLike(popularId, userIds.get(1)));
+        assertFalse(likeWriteBuffer.pendingFilmIds().contains(popularId));
+
+        // Фильм и пользователь удалены между постановкой лайков в очередь и записью пакета,
+        // например, удаление фильма ещё не успело снять его лайки с очереди
+        Long deletedId = filmDbStorage.addFilm(film("Deleted")).getId();
+        assertTrue(filmDbStorage.addLike(deletedId, userIds.get(0)));
+        assertTrue(filmDbStorage.addLike(trendingId, userIds.get(1)));
+        assertTrue(filmDbStorage.addLike(trendingId, userIds.get(2)));
+        jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", deletedId);
+        jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", userIds.get(2));
+        // Лайк, пришедший между удалением строки фильма и снятием его очереди, тоже отклоняется
+        Long racedId = filmDbStorage.addFilm(film("Raced")).getId();
+        jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", racedId);
+        assertFalse(filmDbStorage.addLike(racedId, userIds.get(0)));
+        assertFalse(likeWriteBuffer.pendingFilmIds().contains(racedId));
+
+        likeWriteBuffer.flush();
+
+        assertTrue(likeWriteBuffer.pendingFilmIds().isEmpty());
+        assertEquals(2, countLikes(trendingId));
+        assertEquals(2, likesCount(trendingId));
+        assertEquals(0, countLikes(deletedId));
+    }
+
+    private int countLikes(Long filmId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private int likesCount(Long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private Long user(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                login + "@example.com", login, login, Date.valueOf("2000-01-01"));
+        return jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = ?", Long.class, login);
+    }
+}
@@ -33,6 +33,7 @@ public class MpaDbStorageTests {
         jdbcTemplate.update("INSERT INTO mpa_rating (mpa_rating_id, name) VALUES (3, 'PG-13')");
         jdbcTemplate.update("INSERT INTO mpa_rating (mpa_rating_id, name) VALUES (4, 'R')");
         jdbcTemplate.update("INSERT INTO mpa_rating (mpa_rating_id, name) VALUES (5, 'NC-17')");
+        mpaDbStorage.refresh();
     }
 
     @Test
@@ -69,5 +70,14 @@ public class MpaDbStorageTests {
         // Проверяем, что результат пустой
         assertTrue(mpaRatingOptional.isEmpty());
     }
-}
 
+    @Test
+    public void cachedValuesShouldNotBeChangedThroughReturnedObjects() {
+        // Изменение полученного объекта, например в фильме, не портит справочник
+        mpaDbStorage.getMpaById(1L).orElseThrow().setName("Изменено");
+        mpaDbStorage.getAllMpa().get(0).setName("Изменено");
+
+        assertNotEquals("Изменено", mpaDbStorage.getMpaById(1L).orElseThrow().getName());
+        assertNotEquals("Изменено", mpaDbStorage.getAllMpa().get(0).getName());
+    }
+}
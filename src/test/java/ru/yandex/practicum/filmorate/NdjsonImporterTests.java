@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.NdjsonImporter;
+import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Ошибки потоковой загрузки учитываются по отдельным строкам, хорошие записи пачки сохраняются.
+// Тест идёт без общей транзакции: каждая пачка фиксируется или откатывается сама, как в приложении
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = "filmorate.bulk.batch-size=3")
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Import({NdjsonImporter.class, UserDbStorage.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NdjsonImporterTests {
+    private final NdjsonImporter ndjsonImporter;
+    private final UserDbStorage userDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    public void errorsShouldBeReportedPerRecord() {
+        String body = String.join("\n",
+                user("first"),
+                "{\"email\":",
+                "{\"email\":\"wrong\",\"login\":\"invalid\",\"birthday\":\"2000-01-01\"}",
+                user("second"),
+                user("x".repeat(300)),
+                user("third"),
+                "",
+                user("fourth"));
+
+        BulkImportResult result = ndjsonImporter.importRecords(stream(body), User.class, userDbStorage::addUsers);
+
+        // Строка, отклонённая базой, не мешает остальным записям своей пачки
+        assertEquals(4, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(2L, 3L, 5L), result.getErrors().stream()
+                .map(BulkImportResult.RecordError::getLine).toList());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Некорректный JSON"));
+        assertEquals("email: Неверный формат электронной почты", result.getErrors().get(1).getMessage());
+        assertTrue(result.getErrors().get(2).getMessage().startsWith("Ошибка записи в хранилище: "));
+        assertEquals(List.of("first", "second", "third", "fourth"), jdbcTemplate.queryForList(
+                "SELECT login FROM users ORDER BY user_id", String.class));
+    }
+
+    @Test
+    public void writerFailureShouldNotLoseResult() {
+        String body = String.join("\n", user("kept"), user("broken"), user("other"), user("next"));
+
+        // Сбой, не связанный с базой, отклоняет только свою запись, итог загрузки возвращается
+        BulkImportResult result = ndjsonImporter.importRecords(stream(body), User.class, users -> {
+            if (users.stream().anyMatch(user -> user.getLogin().equals("broken"))) {
+                throw new IllegalStateException("Сбой записи");
+            }
+            userDbStorage.addUsers(users);
+        });
+
+        assertEquals(3, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2L, result.getErrors().get(0).getLine());
+        assertEquals("Сбой записи", result.getErrors().get(0).getMessage());
+        assertEquals(List.of("kept", "other", "next"), jdbcTemplate.queryForList(
+                "SELECT login FROM users ORDER BY user_id", String.class));
+    }
+
+    private static String user(String login) {
+        return "{\"email\":\"" + login.substring(0, Math.min(login.length(), 20)) + "@example.com\","
+                + "\"login\":\"" + login + "\",\"birthday\":\"2000-01-01\"}";
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+// Выполняет все операции хранилищ, затем прогоняет каждый записанный запрос через EXPLAIN
+// и падает, если план содержит полный просмотр таблицы или обход индекса без условия
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, LikeWriteBuffer.class, UserDbStorage.class, GenreDbStorage.class, MpaDbStorage.class,
+        SqlStatementRecorder.class})
+public class QueryPlanTests {
+    // Запросы, которым полный просмотр нужен по смыслу: они читают всю таблицу.
+    // getAllFilms, getAllUsers, forEachLike, forEachFriendship, forEachFilmSummary и загрузка кешей справочников
+    private static final Set<String> FULL_SCAN_ALLOWED = Set.of(
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, fmr.mpa_rating_id FROM films f "
+                    + "LEFT JOIN film_mpa_rating fmr ON f.film_id = fmr.film_id ORDER BY f.film_id",
+            "SELECT u.user_id, u.email, u.login, u.name, u.birthday FROM users u ORDER BY u.user_id",
+            "SELECT film_id, user_id FROM likes",
+            "SELECT film_id, name, description, likes_count FROM films",
+            "SELECT user_id, friend_id FROM friendship",
+            "SELECT * FROM genre ORDER BY genre_id",
+            "SELECT * FROM mpa_rating ORDER BY mpa_rating_id");
+    // Обращение к таблице в плане H2: /* PUBLIC.<индекс>: <условие> */ или /* PUBLIC.<таблица>.tableScan */
+    private static final Pattern TABLE_ACCESS = Pattern.compile("/\\* PUBLIC\\.([A-Za-z0-9_.]+)(:[^*]*)? \\*/");
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final GenreDbStorage genreDbStorage;
+    private final MpaDbStorage mpaDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    @Test
+    public void storageQueriesShouldNotScanTables() {
+        sqlStatementRecorder.reset();
+        runAllStorageOperations();
+
+        // Каждый уникальный запрос - с параметрами первого выполнения
+        Map<String, List<Object>> queries = new LinkedHashMap<>();
+        for (SqlStatementRecorder.Execution execution : sqlStatementRecorder.getExecutions()) {
+            if (!execution.batch() && !execution.sql().trim().toUpperCase().startsWith("INSERT")) {
+                queries.putIfAbsent(execution.sql(), execution.parameters());
+            }
+        }
+
+        List<String> scans = new ArrayList<>();
+        queries.forEach((sql, parameters) -> {
+            String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters.toArray());
+            if (scansTable(sql, plan) && !FULL_SCAN_ALLOWED.contains(sql)) {
+                scans.add(sql + System.lineSeparator() + plan);
+            }
+        });
+        assertTrue(queries.size() > 10, "Записано слишком мало запросов: " + queries.keySet());
+        assertTrue(scans.isEmpty(), "Запросы с полным просмотром таблиц:" + System.lineSeparator()
+                + String.join(System.lineSeparator() + System.lineSeparator(), scans));
+    }
+
+    // Полный просмотр - это tableScan или индекс без условия: обход всего индекса читает те же строки.
+    // Исключение - первые строки по индексу без фильтров (index sorted с FETCH FIRST): обход
+    // останавливается после LIMIT строк
+    private static boolean scansTable(String sql, String plan) {
+        boolean boundedWalk = plan.contains("/* index sorted */") && plan.contains("FETCH FIRST")
+                && !sql.toUpperCase().contains("WHERE");
+        Matcher access = TABLE_ACCESS.matcher(plan);
+        while (access.find()) {
+            if (access.group(1).endsWith(".tableScan") || access.group(2) == null && !boundedWalk) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runAllStorageOperations() {
+        genreDbStorage.refresh();
+        mpaDbStorage.refresh();
+
+        User user = userDbStorage.addUser(user("plan1"));
+        List<User> others = userDbStorage.addUsers(List.of(user("plan2"), user("plan3")));
+        Long userId = user.getId();
+        Long otherId = others.get(0).getId();
+        Long friendId = others.get(1).getId();
+        userDbStorage.updateUser(user);
+        userDbStorage.existsById(userId);
+        userDbStorage.getUserVersion(userId);
+        userDbStorage.getUserById(userId);
+        userDbStorage.getUsersByIds(List.of(userId, otherId), true);
+        userDbStorage.getAllUsers();
+        userDbStorage.getUsersPage(0, 10);
+        userDbStorage.addFriend(userId, friendId);
+        userDbStorage.addFriend(otherId, friendId);
+        userDbStorage.getFriends(userId, true);
+        userDbStorage.getCommonFriends(userId, otherId);
+        userDbStorage.forEachFriendship((friendUserId, friendFriendId) -> {
+        });
+        userDbStorage.removeFriend(userId, friendId);
+
+        Film film = filmDbStorage.addFilm(film("Plan"));
+        filmDbStorage.addFilms(List.of(film("Plan 2")));
+        Long filmId = film.getId();
+        film.getGenres().clear();
+        filmDbStorage.updateFilm(film);
+        filmDbStorage.existsById(filmId);
+        filmDbStorage.getFilmVersion(filmId);
+        filmDbStorage.getFilmById(filmId);
+        filmDbStorage.getFilmsByIds(List.of(filmId));
+        filmDbStorage.getAllFilms();
+        filmDbStorage.getFilmsPage(0, 10);
+        filmDbStorage.addLike(filmId, userId);
+        filmDbStorage.getMostPopularFilms(10);
+        filmDbStorage.forEachLike((likedFilmId, likerId) -> {
+        });
+        filmDbStorage.forEachFilmSummary((summaryFilmId, name, description, likes) -> {
+        });
+        filmDbStorage.getMostPopularFilms(10, 1L, 1L, 2000);
+        filmDbStorage.getMostPopularFilms(10, 1L, 1L, null);
+        filmDbStorage.getMostPopularFilms(10, null, 1L, null);
+        filmDbStorage.removeLike(filmId, userId);
+        filmDbStorage.deleteFilm(filmId);
+        userDbStorage.deleteUser(friendId);
+    }
+}
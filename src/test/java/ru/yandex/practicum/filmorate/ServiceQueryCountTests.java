@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.service.MpaService;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.recommendation.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.NdjsonImporter;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFeedStorage;
+import ru.yandex.practicum.filmorate.storage.db.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.db.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+// Число SQL-запросов на операцию сервиса не должно зависеть от объёма данных
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Import({FilmService.class, UserService.class, MpaService.class, GenreService.class, NdjsonImporter.class,
+        RecommendationService.class, FeedService.class, FilmSearchIndex.class, FilmRecommendationIndex.class,
+        FriendGraphIndex.class, InMemoryFeedStorage.class, FilmDbStorage.class, LikeWriteBuffer.class,
+        UserDbStorage.class, GenreDbStorage.class, MpaDbStorage.class, SqlStatementRecorder.class})
+public class ServiceQueryCountTests {
+    private static final int FILMS = 100;
+    private static final int USERS = 10;
+    private static final int LIKES_PER_USER = 10;
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final FeedService feedService;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    private List<Film> films;
+    private List<User> users;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate.execute("DELETE FROM film_genre");
+        jdbcTemplate.execute("DELETE FROM film_mpa_rating");
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM friendship");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+
+        // 100 фильмов с жанрами и 10 пользователей, каждый дружит со всеми и лайкает первые 10 фильмов
+        List<Film> newFilms = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            newFilms.add(film("Film " + i));
+        }
+        films = filmDbStorage.addFilms(newFilms);
+        List<User> newUsers = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            newUsers.add(user("user" + i));
+        }
+        users = userDbStorage.addUsers(newUsers);
+        for (User user : users) {
+            for (Film film : films.subList(0, LIKES_PER_USER)) {
+                filmDbStorage.addLike(film.getId(), user.getId());
+            }
+            for (User friend : users) {
+                if (friend.getId() != user.getId()) {
+                    userDbStorage.addFriend(user.getId(), friend.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void filmReadsShouldUseConstantNumberOfStatements() {
+        // Фильмы, жанры и лайки - по одному запросу
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.getFilmById(films.get(0).getId()));
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.getFilms(0, FILMS));
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.getMostPopularFilms(10));
+
+        // Поиск идёт по индексу в памяти, из базы загружаются только найденные фильмы
+        filmService.rebuildSearchIndex();
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.searchFilms("film", 10));
+
+        // Рекомендации считаются по модели в памяти: проверка пользователя и загрузка найденных фильмов
+        filmDbStorage.addLike(films.get(LIKES_PER_USER).getId(), users.get(1).getId());
+        recommendationService.rebuildRecommendationIndex();
+        sqlStatementRecorder.assertStatementCount(4,
+                () -> recommendationService.getRecommendations(users.get(0).getId(), 10));
+    }
+
+    @Test
+    public void likeShouldUseExistenceProbesAndSingleWrite() {
+        Long filmId = films.get(0).getId();
+        Long userId = users.get(0).getId();
+
+        // Две проверки существования, запись лайка и пересчёт счётчиков фильма, его жанров и рейтинга
+        sqlStatementRecorder.assertStatementCount(6, () -> filmService.removeLike(filmId, userId));
+        sqlStatementRecorder.assertStatementCount(6, () -> filmService.addLike(filmId, userId));
+
+        // Повторный лайк ничего не меняет и счётчик не трогает
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.addLike(filmId, userId));
+    }
+
+    @Test
+    public void unchangedFilmUpdateShouldNotRewriteLinks() {
+        Film film = films.get(0);
+
+        // Проверка существования, UPDATE и чтение текущих связей
+        sqlStatementRecorder.assertStatementCount(3, () -> filmService.updateFilm(film));
+    }
+
+    @Test
+    public void friendOperationsShouldUseConstantNumberOfStatements() {
+        Long userId = users.get(0).getId();
+        Long otherId = users.get(1).getId();
+
+        // Проверки существования плюс пользователи и ID их друзей
+        sqlStatementRecorder.assertStatementCount(3, () -> userService.getUserFriends(userId, true));
+        sqlStatementRecorder.assertStatementCount(4, () -> userService.getCommonFriends(userId, otherId));
+        sqlStatementRecorder.assertStatementCount(3, () -> userService.addFriend(userId, otherId));
+
+        // Предложения друзей считаются по графу в памяти: проверка и загрузка предложенных пользователей
+        Long outsiderId = userDbStorage.addUser(user("outsider")).getId();
+        userDbStorage.addFriend(otherId, outsiderId);
+        userService.rebuildFriendGraph();
+        sqlStatementRecorder.assertStatementCount(2, () -> userService.getFriendSuggestions(userId, 10, false));
+        sqlStatementRecorder.assertStatementCount(3, () -> userService.getFriendSuggestions(userId, 10, true));
+
+        // Лента собирается в памяти, в базу уходит только проверка пользователя
+        Long filmId = films.get(FILMS - 1).getId();
+        filmService.addLike(filmId, userId);
+        Event latest = sqlStatementRecorder.assertStatementCount(1,
+                () -> feedService.getFeed(otherId, null, 10)).getItems().get(0);
+        assertEquals(new Event(latest.getEventId(), latest.getTimestamp(), userId,
+                Event.EventType.LIKE, Event.Operation.ADD, filmId), latest);
+    }
+
+    @Test
+    public void userDeletionShouldUpdateFollowersAndIndexes() {
+        Long deletedId = users.get(0).getId();
+        Long otherId = users.get(1).getId();
+        // Единственный друг новичка - удаляемый пользователь, через него предлагаются все остальные
+        Long newcomerId = userDbStorage.addUser(user("newcomer")).getId();
+        userDbStorage.addFriend(newcomerId, deletedId);
+        filmDbStorage.addLike(films.get(LIKES_PER_USER).getId(), deletedId);
+        userService.rebuildFriendGraph();
+        recommendationService.rebuildRecommendationIndex();
+        assertEquals(USERS - 1, userService.getFriendSuggestions(newcomerId, 10, false).size());
+        assertEquals(1, recommendationService.getRecommendations(otherId, 10).size());
+        long otherVersion = userService.getUserVersion(otherId);
+
+        // Проверка, лайки пользователя, счётчики фильмов, версии добавивших его и само удаление
+        sqlStatementRecorder.assertStatementCount(7, () -> userService.deleteUser(deletedId));
+
+        // Список друзей добавившего его пользователя изменился, граф и модель рекомендаций его забыли
+        assertEquals(otherVersion + 1, userService.getUserVersion(otherId));
+        assertEquals(USERS - 2, userService.getUserFriends(otherId, false).size());
+        assertEquals(List.of(), userService.getFriendSuggestions(newcomerId, 10, false));
+        assertEquals(List.of(), recommendationService.getRecommendations(otherId, 10));
+    }
+
+    @Test
+    public void bulkImportShouldWriteInBatches() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{\"name\":\"Imported ").append(i).append("\",\"description\":\"d\",")
+                    .append("\"releaseDate\":\"2000-01-01\",\"duration\":90,")
+                    .append("\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}\n");
+        }
+
+        // Фильмы, MPA и жанры - по одному пакетному запросу на всю пачку
+        BulkImportResult result = sqlStatementRecorder.assertMaxStatements(3, () -> filmService.importFilms(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8))));
+        assertEquals(10, result.getImported());
+    }
+}
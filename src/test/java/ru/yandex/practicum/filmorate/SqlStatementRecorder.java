@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Оборачивает DataSource тестового контекста и записывает выполненные SQL-запросы вместе с параметрами.
+// Подключается к тесту через @Import(SqlStatementRecorder.class).
+// Пакетный executeBatch() считается одним запросом - так же, как он уходит в базу.
+public class SqlStatementRecorder implements BeanPostProcessor {
+    private final List<Execution> statements = Collections.synchronizedList(new ArrayList<>());
+
+    // Выполненный запрос; для пакета в parameters лежат параметры последней строки
+    public record Execution(String sql, List<Object> parameters, boolean batch) {
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof RecordingDataSource)) {
+            return new RecordingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    public List<String> getStatements() {
+        return getExecutions().stream()
+                .map(execution -> execution.batch() ? "[batch] " + execution.sql() : execution.sql())
+                .toList();
+    }
+
+    public List<Execution> getExecutions() {
+        synchronized (statements) {
+            return List.copyOf(statements);
+        }
+    }
+
+    // Выполняет блок и проверяет, что он выполнил ровно expected запросов
+    public <T> T assertStatementCount(int expected, Supplier<T> block) {
+        T result = record(block);
+        if (statements.size() != expected) {
+            fail(report("Ожидалось " + expected + " SQL-запросов"));
+        }
+        return result;
+    }
+
+    public void assertStatementCount(int expected, Runnable block) {
+        assertStatementCount(expected, toSupplier(block));
+    }
+
+    // Выполняет блок и проверяет, что он выполнил не больше max запросов
+    public <T> T assertMaxStatements(int max, Supplier<T> block) {
+        T result = record(block);
+        if (statements.size() > max) {
+            fail(report("Ожидалось не больше " + max + " SQL-запросов"));
+        }
+        return result;
+    }
+
+    public void assertMaxStatements(int max, Runnable block) {
+        assertMaxStatements(max, toSupplier(block));
+    }
+
+    private <T> T record(Supplier<T> block) {
+        reset();
+        return block.get();
+    }
+
+    private String report(String expectation) {
+        List<String> executed = getStatements();
+        StringBuilder message = new StringBuilder(expectation)
+                .append(", выполнено ").append(executed.size()).append(':');
+        for (int i = 0; i < executed.size(); i++) {
+            message.append(System.lineSeparator()).append(i + 1).append(". ").append(executed.get(i));
+        }
+        return message.toString();
+    }
+
+    private static Supplier<Void> toSupplier(Runnable block) {
+        return () -> {
+            block.run();
+            return null;
+        };
+    }
+
+    private Connection recordingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        // Для prepareStatement/prepareCall текст запроса известен заранее
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return recordingStatement(statement, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Statement recordingStatement(Statement statement, String preparedSql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        Map<Integer, Object> parameters = new TreeMap<>();
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index) {
+                        parameters.put(index, name.equals("setNull") ? null : args[1]);
+                    } else if (name.equals("clearParameters")) {
+                        parameters.clear();
+                    } else if (name.startsWith("execute")) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text
+                                ? text : preparedSql;
+                        statements.add(new Execution(sql, new ArrayList<>(parameters.values()),
+                                name.equals("executeBatch")));
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class RecordingDataSource extends DelegatingDataSource {
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return recordingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return recordingConnection(super.getConnection(username, password));
+        }
+    }
+}
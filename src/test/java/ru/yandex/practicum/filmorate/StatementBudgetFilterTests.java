@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.config.JdbcConcurrencyLimiter;
+import ru.yandex.practicum.filmorate.config.StatementBudgetFilter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatementBudgetFilterTests {
+
+    @Test
+    public void filterShouldRecordStatementsPerEndpoint() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DataSource dataSource = (DataSource) new JdbcConcurrencyLimiter(2, Duration.ofSeconds(1), registry)
+                .postProcessAfterInitialization(new DriverManagerDataSource("jdbc:h2:mem:budget"), "dataSource");
+        StatementBudgetFilter filter = new StatementBudgetFilter(registry, 2);
+
+        // Запрос к /films/{id} выполняет три SQL-запроса
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/films/{id}");
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                for (int i = 0; i < 3; i++) {
+                    statement.execute("SELECT 1");
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Запросы учтены по шаблону пути, а вне HTTP-запроса счётчик не ведётся
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("SELECT 1");
+        }
+        DistributionSummary summary = registry.get("filmorate.http.jdbc.statements")
+                .tag("uri", "/films/{id}")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(3, summary.totalAmount());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+// Общие заготовки фильмов и пользователей для тестов. Возвращаются новые объекты без ID,
+// тест может менять их перед сохранением.
+public final class TestData {
+
+    private TestData() {
+    }
+
+    // Фильм 2000 года с рейтингом 1 и жанром 1
+    public static Film film(String name) {
+        return film(name, 2000, 1L, 1L);
+    }
+
+    public static Film film(String name, int year, Long mpaId, Long genreId) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(year, 6, 1));
+        film.setDuration(100);
+        film.setMpa(mpa(mpaId));
+        film.setGenres(new LinkedHashSet<>(List.of(genre(genreId))));
+        return film;
+    }
+
+    public static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+
+    public static MpaRating mpa(Long id) {
+        MpaRating mpaRating = new MpaRating();
+        mpaRating.setId(id);
+        return mpaRating;
+    }
+
+    public static Genre genre(Long id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
+    public static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+}
@@ -13,19 +13,23 @@ import ru.yandex.practicum.filmorate.storage.db.UserDbStorage;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.TestData.user;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import(UserDbStorage.class)
+@Import({UserDbStorage.class, SqlStatementRecorder.class})
 public class UserDbStorageTests {
 
     private final UserDbStorage userDbStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder sqlStatementRecorder;
 
     @BeforeEach
     public void setUp() {
@@ -107,6 +111,31 @@ public class UserDbStorageTests {
         assertTrue(userOptional.isEmpty());
     }
 
+    @Test
+    public void userDeletionShouldDecrementLikesOfLikedFilms() {
+        Long userId = userDbStorage.addUser(user("liker")).getId();
+        Long otherId = userDbStorage.addUser(user("other")).getId();
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                "Film", "Description", Date.valueOf("2024-01-01"), 100);
+        Long filmId = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'Film'", Long.class);
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id, likes_count) VALUES (?, 1, 2)", filmId);
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?), (?, ?)",
+                filmId, userId, filmId, otherId);
+        jdbcTemplate.update("UPDATE films SET likes_count = 2 WHERE film_id = ?", filmId);
+
+        userDbStorage.deleteUser(userId);
+
+        // Счётчики совпадают с оставшимися лайками, версия фильма изменилась для ETag
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, filmId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM film_genre WHERE film_id = ?",
+                Integer.class, filmId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT version FROM films WHERE film_id = ?",
+                Long.class, filmId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?",
+                Integer.class, filmId));
+    }
+
     @Test
     public void allUsersRetrievalShouldReturnCompleteList() {
         // Добавляем пользователей
@@ -135,8 +164,9 @@ public class UserDbStorageTests {
         Long userId1 = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user1'", Long.class);
         Long userId2 = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user2'", Long.class);
 
-        // Добавляем друга
-        userDbStorage.addFriend(userId1, userId2);
+        // Добавляем друга, повторное добавление ничего не меняет
+        assertTrue(userDbStorage.addFriend(userId1, userId2));
+        assertFalse(userDbStorage.addFriend(userId1, userId2));
 
         // Проверяем, что друг добавлен
         Integer friendCount = jdbcTemplate.queryForObject(
@@ -145,7 +175,8 @@ public class UserDbStorageTests {
         assertEquals(1, friendCount);
 
         // Удаляем друга
-        userDbStorage.removeFriend(userId1, userId2);
+        assertTrue(userDbStorage.removeFriend(userId1, userId2));
+        assertFalse(userDbStorage.removeFriend(userId1, userId2));
 
         // Проверяем, что друг удален
         friendCount = jdbcTemplate.queryForObject(
@@ -153,5 +184,104 @@ public class UserDbStorageTests {
                 Integer.class, userId1, userId2);
         assertEquals(0, friendCount);
     }
-}
 
+    @Test
+    public void usersPageShouldStartAfterCursorAndRespectLimit() {
+        // Добавляем пять пользователей
+        for (int i = 1; i <= 5; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "user" + i + "@example.com", "user" + i, "User " + i, Date.valueOf("2000-01-01"));
+        }
+        Long thirdId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user3'", Long.class);
+
+        // Получаем страницу после третьего пользователя
+        List<User> page = userDbStorage.getUsersPage(thirdId, 10);
+
+        // Проверяем, что вернулись только оставшиеся пользователи
+        assertEquals(2, page.size());
+        assertEquals("user4", page.get(0).getLogin());
+        assertEquals("user5", page.get(1).getLogin());
+    }
+
+    @Test
+    public void friendsRetrievalShouldReturnHydratedFriendsWithoutExtraQueries() {
+        // Добавляем пользователя и трёх его друзей, у каждого из которых есть друг user1
+        for (int i = 1; i <= 4; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "user" + i + "@example.com", "user" + i, "User " + i, Date.valueOf("2000-01-01"));
+        }
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'user1'", Long.class);
+        List<Long> friendIds = jdbcTemplate.queryForList(
+                "SELECT user_id FROM users WHERE login <> 'user1' ORDER BY user_id", Long.class);
+        for (Long friendId : friendIds) {
+            userDbStorage.addFriend(userId, friendId);
+            userDbStorage.addFriend(friendId, userId);
+        }
+
+        // Получаем друзей с их списками друзей и без них
+        sqlStatementRecorder.reset();
+        List<User> friends = userDbStorage.getFriends(userId, true);
+        assertEquals(2, sqlStatementRecorder.getStatementCount());
+
+        sqlStatementRecorder.reset();
+        List<User> friendsWithoutIds = userDbStorage.getFriends(userId, false);
+        assertEquals(1, sqlStatementRecorder.getStatementCount());
+
+        // Проверяем данные
+        assertEquals(friendIds, friends.stream().map(User::getId).toList());
+        assertEquals(Set.of(userId), friends.get(0).getFriends());
+        assertTrue(friendsWithoutIds.get(0).getFriends().isEmpty());
+    }
+
+    @Test
+    public void commonFriendsShouldBeIntersectedByDatabase() {
+        // Добавляем двух пользователей и пятерых кандидатов в друзья
+        for (int i = 1; i <= 7; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "user" + i + "@example.com", "user" + i, "User " + i, Date.valueOf("2000-01-01"));
+        }
+        List<Long> ids = jdbcTemplate.queryForList("SELECT user_id FROM users ORDER BY user_id", Long.class);
+        Long first = ids.get(0);
+        Long second = ids.get(1);
+
+        // Первый дружит с 3, 4, 5, второй - с 4, 5, 6, 7
+        for (int i = 2; i <= 4; i++) {
+            userDbStorage.addFriend(first, ids.get(i));
+        }
+        for (int i = 3; i <= 6; i++) {
+            userDbStorage.addFriend(second, ids.get(i));
+        }
+
+        // Получаем общих друзей
+        sqlStatementRecorder.reset();
+        List<User> common = userDbStorage.getCommonFriends(first, second);
+
+        // Пересечение и загрузка друзей - два запроса независимо от числа друзей
+        assertEquals(2, sqlStatementRecorder.getStatementCount());
+        assertEquals(List.of(ids.get(3), ids.get(4)), common.stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void batchUserAdditionShouldAssignGeneratedIds() {
+        // Готовим пачку пользователей
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(2000, 1, i));
+            users.add(user);
+        }
+
+        // Добавляем пачку одним пакетным запросом
+        sqlStatementRecorder.reset();
+        userDbStorage.addUsers(users);
+        assertEquals(1, sqlStatementRecorder.getStatementCount());
+
+        // Проверяем, что ID присвоены и соответствуют сохранённым записям
+        for (User user : users) {
+            assertEquals(user.getLogin(), userDbStorage.getUserById(user.getId()).orElseThrow().getLogin());
+        }
+    }
+}